@@ -10,4 +10,5 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface GetMapping {
     String path() default "";
+    long timeoutMillis() default -1;
 }
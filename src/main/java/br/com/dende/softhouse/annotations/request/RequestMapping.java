@@ -13,4 +13,5 @@ import java.lang.annotation.Target;
 public @interface RequestMapping {
     String path() default "";
     String method() default "GET";
+    long timeoutMillis() default -1;
 }
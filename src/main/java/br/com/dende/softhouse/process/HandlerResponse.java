@@ -0,0 +1,46 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.process.route.ResponseEntity;
+import br.com.dende.softhouse.utils.JsonMapper;
+import br.com.dende.softhouse.utils.PooledBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Status, headers and body of a handler result. A {@link ResponseEntity} body is
+ * sent as JSON, any other result as its {@code toString()} text.
+ */
+record HandlerResponse(int status, Map<String, String> headers, Object body, boolean json) {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    static HandlerResponse of(Object result) {
+        if (result instanceof ResponseEntity<?> responseEntity) {
+            return new HandlerResponse(responseEntity.status(), responseEntity.headers(), responseEntity.body(), true);
+        }
+        return new HandlerResponse(200, Map.of(), result.toString(), false);
+    }
+
+    static HandlerResponse empty(int status) {
+        return new HandlerResponse(status, Map.of(), null, false);
+    }
+
+    void writeBody(PooledBuffer buffer) {
+        if (body == null) {
+            return;
+        }
+        if (json) {
+            JsonMapper.writeJson(body, buffer);
+        } else {
+            buffer.writeUtf8((String) body);
+        }
+    }
+
+    byte[] toBytes() {
+        if (body == null) {
+            return EMPTY;
+        }
+        return json ? JsonMapper.toJson(body) : ((String) body).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,29 @@
+package br.com.dende.softhouse.process;
+
+/**
+ * Dispatches requests straight into the application's routes, with no socket or
+ * HTTP server involved. Routing, argument resolution and {@code ResponseEntity}
+ * handling are the same as for requests coming from the network.
+ */
+public final class InProcessClient {
+
+    private final RequestHandler requestHandler;
+    private final boolean passThrough;
+
+    InProcessClient(final RequestHandler requestHandler, final boolean passThrough) {
+        this.requestHandler = requestHandler;
+        this.passThrough = passThrough;
+    }
+
+    /**
+     * Returns a client that hands request and response objects over as they are,
+     * skipping JSON serialization whenever the types line up.
+     */
+    public InProcessClient passThrough() {
+        return new InProcessClient(requestHandler, true);
+    }
+
+    public InProcessResponse send(InProcessRequest request) {
+        return requestHandler.handle(request, passThrough);
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.process.route.HTTPMethod;
+import br.com.dende.softhouse.utils.JsonMapper;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class InProcessRequest {
+
+    private final HTTPMethod method;
+    private final URI uri;
+    private final Map<String, String> headers;
+    private byte[] rawBody;
+    private Object body;
+
+    private InProcessRequest(HTTPMethod method, String path) {
+        this.method = method;
+        this.uri = URI.create(path);
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    }
+
+    public static InProcessRequest of(HTTPMethod method, String path) {
+        return new InProcessRequest(method, path);
+    }
+
+    public static InProcessRequest get(String path) {
+        return of(HTTPMethod.GET, path);
+    }
+
+    public static InProcessRequest post(String path) {
+        return of(HTTPMethod.POST, path);
+    }
+
+    public static InProcessRequest put(String path) {
+        return of(HTTPMethod.PUT, path);
+    }
+
+    public static InProcessRequest patch(String path) {
+        return of(HTTPMethod.PATCH, path);
+    }
+
+    public static InProcessRequest delete(String path) {
+        return of(HTTPMethod.DELETE, path);
+    }
+
+    public InProcessRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * Typed request body. Serialized to JSON like a network request would be,
+     * unless the client is in pass-through mode.
+     */
+    public InProcessRequest body(Object body) {
+        this.body = body;
+        this.rawBody = null;
+        return this;
+    }
+
+    public InProcessRequest rawBody(byte[] rawBody) {
+        this.rawBody = rawBody;
+        this.body = null;
+        return this;
+    }
+
+    public HTTPMethod method() {
+        return method;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    public Map<String, String> headers() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    String header(String name) {
+        return headers.get(name);
+    }
+
+    Object readBody(Class<?> type, boolean passThrough) {
+        if (body != null) {
+            if (passThrough) {
+                return type.isInstance(body) ? body : JsonMapper.convert(body, type);
+            }
+            return JsonMapper.fromJson(JsonMapper.toJson(body), type);
+        }
+        return JsonMapper.fromJson(rawBody == null ? new byte[0] : rawBody, type);
+    }
+}
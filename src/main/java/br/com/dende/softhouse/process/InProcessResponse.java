@@ -0,0 +1,72 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.utils.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+
+public final class InProcessResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final HandlerResponse response;
+    private final boolean passThrough;
+    private final Exception error;
+    private byte[] body;
+
+    private InProcessResponse(HandlerResponse response, boolean passThrough, Exception error) {
+        this.status = response.status();
+        this.headers = response.headers();
+        this.response = response;
+        this.passThrough = passThrough;
+        this.error = error;
+        this.body = passThrough ? null : response.toBytes();
+    }
+
+    static InProcessResponse of(HandlerResponse response, boolean passThrough) {
+        return new InProcessResponse(response, passThrough, null);
+    }
+
+    static InProcessResponse failed(int status, Exception error) {
+        return new InProcessResponse(HandlerResponse.empty(status), false, error);
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public Map<String, String> headers() {
+        return headers;
+    }
+
+    /**
+     * Response bytes as they would have been sent over the network. In pass-through
+     * mode they are only produced when asked for.
+     */
+    public byte[] body() {
+        if (body == null) {
+            body = response.toBytes();
+        }
+        return body;
+    }
+
+    public String bodyAsString() {
+        return new String(body(), StandardCharsets.UTF_8);
+    }
+
+    public <T> T body(Class<T> type) {
+        Object entity = response.body();
+        if (passThrough && entity != null) {
+            return type.isInstance(entity) ? type.cast(entity) : JsonMapper.convert(entity, type);
+        }
+        if (!response.json() && type == String.class) {
+            return type.cast(bodyAsString());
+        }
+        return JsonMapper.fromJson(body(), type);
+    }
+
+    public Optional<Exception> error() {
+        return Optional.ofNullable(error);
+    }
+}
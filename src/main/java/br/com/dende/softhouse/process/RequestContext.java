@@ -0,0 +1,76 @@
+package br.com.dende.softhouse.process;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per-request state that can be injected into handler methods by declaring
+ * a parameter of this type. Exposes the request deadline and lets long-running
+ * handlers cooperate with cancellation.
+ */
+public final class RequestContext {
+
+    // beyond any real deadline, and small enough that nanoTime arithmetic cannot overflow
+    private static final Duration MAX_TIMEOUT = Duration.ofNanos(Long.MAX_VALUE / 2);
+
+    private final Instant deadline;
+    private final long deadlineNanos;
+    private final List<Runnable> cancelCallbacks;
+    private volatile boolean cancelled;
+
+    RequestContext(final Duration timeout) {
+        this.cancelCallbacks = new CopyOnWriteArrayList<>();
+        if (timeout == null) {
+            this.deadline = null;
+            this.deadlineNanos = 0;
+        } else {
+            Duration bounded = timeout.compareTo(MAX_TIMEOUT) > 0 ? MAX_TIMEOUT : timeout;
+            this.deadline = Instant.now().plus(bounded);
+            this.deadlineNanos = System.nanoTime() + bounded.toNanos();
+        }
+    }
+
+    public Optional<Instant> deadline() {
+        return Optional.ofNullable(deadline);
+    }
+
+    public Optional<Duration> remaining() {
+        return hasDeadline()
+                ? Optional.of(Duration.ofNanos(remainingNanos()))
+                : Optional.empty();
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (hasDeadline() && remainingNanos() == 0);
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Request deadline exceeded");
+        }
+    }
+
+    boolean hasDeadline() {
+        return deadline != null;
+    }
+
+    long remainingNanos() {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    void onCancel(Runnable callback) {
+        cancelCallbacks.add(callback);
+        if (cancelled) {
+            callback.run();
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        cancelCallbacks.forEach(Runnable::run);
+    }
+}
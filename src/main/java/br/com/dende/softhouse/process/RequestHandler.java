@@ -3,28 +3,83 @@ package br.com.dende.softhouse.process;
 import br.com.dende.softhouse.annotations.request.PathVariable;
 import br.com.dende.softhouse.annotations.request.RequestBody;
 import br.com.dende.softhouse.process.route.HTTPMethod;
-import br.com.dende.softhouse.process.route.ResponseEntity;
 import br.com.dende.softhouse.process.route.Route;
+import br.com.dende.softhouse.utils.BufferPool;
 import br.com.dende.softhouse.utils.JsonMapper;
+import br.com.dende.softhouse.utils.PooledBuffer;
 import com.sun.net.httpserver.HttpExchange;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 
 public class RequestHandler {
 
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    /**
+     * Exchange attribute a transport may set to a {@link CompletionStage} that completes
+     * when the client abandons the request. The request context is cancelled with it.
+     */
+    public static final String CANCELLATION_ATTRIBUTE = "br.com.dende.softhouse.cancellation";
+
+    private static final int HANDLER_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+    private static final int HANDLER_QUEUE_SIZE = 256;
+
     private final Map<String, Route> routes;
+    private final BufferPool bufferPool;
+    private volatile Duration defaultTimeout;
+    private volatile ExecutorService handlerExecutor;
+    private ExecutorService defaultHandlerExecutor;
 
     public RequestHandler(final Map<String, Route> routes) {
         this.routes = routes;
+        this.bufferPool = new BufferPool();
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public void setDefaultTimeout(final Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public void setHandlerExecutor(final ExecutorService handlerExecutor) {
+        this.handlerExecutor = handlerExecutor;
+    }
+
+    /**
+     * Stops the default handler executor. Executors passed to
+     * {@link #setHandlerExecutor} belong to the caller and are left running.
+     */
+    public synchronized void shutdown() {
+        if (defaultHandlerExecutor != null) {
+            defaultHandlerExecutor.shutdownNow();
+            defaultHandlerExecutor = null;
+        }
     }
 
     public void handle(HttpExchange httpExchange) throws IOException {
@@ -32,75 +87,237 @@ public class RequestHandler {
         final String path = httpExchange.getRequestURI().getPath();
         final HTTPMethod method = HTTPMethod.valueOf(httpExchange.getRequestMethod());
 
-        Route route = routes
-                .values()
-                .stream()
-                .filter(r -> r.method() == method)
-                .filter(r -> {
-                    String routePath = r.path();
-                    String regex = routePath.replaceAll("\\{[^/]+}", "([^/]+)");
-                    Pattern pattern = Pattern.compile("^" + regex + "$");
-                    return pattern.matcher(path).matches();
-                }).findFirst()
-                .orElse(null);
+        Route route = findRoute(method, path);
 
         if (route == null) {
             httpExchange.sendResponseHeaders(404, -1);
             return;
         }
 
+        RequestContext context = null;
+
         try {
 
-            Map<String, String> vars = extractPathVariables(route, path);
-            Object[] args = resolveMethodArguments(route.handlerMethod(), vars, httpExchange);
+            context = newContext(route, httpExchange.getRequestHeaders().getFirst(TIMEOUT_HEADER));
 
-            Object result = route.handlerMethod().invoke(route.controller(), args);
-            byte[] body;
+            if (httpExchange.getAttribute(CANCELLATION_ATTRIBUTE) instanceof CompletionStage<?> cancellation) {
+                RequestContext cancellable = context;
+                cancellation.whenComplete((ignored, error) -> cancellable.cancel());
+            }
 
-            if (result instanceof ResponseEntity<?> responseEntity) {
+            Object result = invoke(
+                    route,
+                    path,
+                    type -> JsonMapper.fromJson(httpExchange.getRequestBody(), type),
+                    context
+            );
+            writeResponse(httpExchange, result);
 
-                responseEntity.headers()
-                        .forEach((k, v) ->
-                                httpExchange.getResponseHeaders().add(k, v)
-                        );
+        } catch (Exception e) {
+            httpExchange.sendResponseHeaders(failureStatus(e, context), -1);
+        }
+    }
 
-                body = responseEntity.body() == null
-                        ? new byte[0]
-                        : JsonMapper.toJson(responseEntity.body());
+    private void writeResponse(HttpExchange httpExchange, Object result) throws IOException {
+        HandlerResponse response = HandlerResponse.of(result);
+        PooledBuffer body = bufferPool.acquire();
 
-                httpExchange.sendResponseHeaders(responseEntity.status(), body.length);
+        try {
+            response.headers().forEach((k, v) -> httpExchange.getResponseHeaders().add(k, v));
+            response.writeBody(body);
 
-            } else {
-                body = result.toString().getBytes();
-                httpExchange.sendResponseHeaders(200, body.length);
-            }
+            httpExchange.sendResponseHeaders(response.status(), body.size());
 
             try (OutputStream os = httpExchange.getResponseBody()) {
-                os.write(body);
+                os.write(body.array(), 0, body.size());
             }
+        } finally {
+            body.release();
+        }
+    }
+
+    InProcessResponse handle(InProcessRequest request, boolean passThrough) {
+
+        final String path = request.uri().getPath();
+
+        Route route = findRoute(request.method(), path);
+
+        if (route == null) {
+            return InProcessResponse.of(HandlerResponse.empty(404), false);
+        }
+
+        RequestContext context = null;
+
+        try {
+
+            context = newContext(route, request.header(TIMEOUT_HEADER));
+
+            Object result = invoke(route, path, type -> request.readBody(type, passThrough), context);
+            return InProcessResponse.of(HandlerResponse.of(result), passThrough);
 
         } catch (Exception e) {
-            httpExchange.sendResponseHeaders(500, -1);
-            e.printStackTrace();
+            return InProcessResponse.failed(failureStatus(e, context), e);
+        }
+    }
+
+    private Route findRoute(HTTPMethod method, String path) {
+        for (Route route : routes.values()) {
+            if (route.method() == method && route.pattern().matcher(path).matches()) {
+                return route;
+            }
         }
+        return null;
+    }
+
+    private int failureStatus(Exception e, RequestContext context) {
+        if (e instanceof RejectedExecutionException) {
+            return 503;
+        }
+        if (e instanceof TimeoutException
+                || (e instanceof CancellationException && context != null && context.isCancelled())) {
+            return 504;
+        }
+        e.printStackTrace();
+        return 500;
+    }
+
+    private RequestContext newContext(Route route, String timeoutHeader) {
+        return new RequestContext(resolveTimeout(route, timeoutHeader));
+    }
+
+    private Duration resolveTimeout(Route route, String header) {
+        Duration timeout = route.timeout() != null ? route.timeout() : defaultTimeout;
+
+        if (header != null) {
+            try {
+                Duration requested = Duration.ofMillis(Long.parseLong(header.trim()));
+                // a deadline that already expired would race the worker, so it is ignored
+                if (requested.compareTo(Duration.ZERO) > 0 && (timeout == null || requested.compareTo(timeout) < 0)) {
+                    timeout = requested;
+                }
+            } catch (NumberFormatException ignored) {
+                // malformed header, keep the configured timeout
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Resolves the arguments and calls the handler. Under a deadline both run on the
+     * handler executor, so reading a slow {@code @RequestBody} counts against it too.
+     */
+    private Object invoke(
+            Route route,
+            String path,
+            Function<Class<?>, Object> bodyReader,
+            RequestContext context
+    ) throws Exception {
+        Supplier<Object[]> args = () -> resolveMethodArguments(route, path, bodyReader, context);
+
+        if (!context.hasDeadline()) {
+            try {
+                return await(route.handlerMethod().invoke(route.controller(), args.get()), context);
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        }
+
+        Future<Object> future = executor().submit(() -> {
+            try {
+                return route.handlerMethod().invoke(route.controller(), args.get());
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        });
+        context.onCancel(() -> future.cancel(true));
+
+        try {
+            return await(future.get(context.remainingNanos(), TimeUnit.NANOSECONDS), context);
+        } catch (TimeoutException e) {
+            context.cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private Object await(Object result, RequestContext context) throws Exception {
+        if (!(result instanceof CompletionStage<?> stage)) {
+            return result;
+        }
+
+        CompletableFuture<?> future = stage.toCompletableFuture();
+        context.onCancel(() -> future.cancel(true));
+
+        try {
+            return context.hasDeadline()
+                    ? future.get(context.remainingNanos(), TimeUnit.NANOSECONDS)
+                    : future.get();
+        } catch (TimeoutException e) {
+            context.cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private Exception unwrap(Exception e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+
+    private ExecutorService executor() {
+        ExecutorService configured = handlerExecutor;
+        if (configured != null) {
+            return configured;
+        }
+
+        synchronized (this) {
+            if (defaultHandlerExecutor == null) {
+                defaultHandlerExecutor = newBoundedExecutor("dende-handler-");
+            }
+            return defaultHandlerExecutor;
+        }
+    }
+
+    /**
+     * Fixed number of daemon threads with a bounded queue; work beyond that is rejected
+     * instead of piling up.
+     */
+    static ExecutorService newBoundedExecutor(String threadPrefix) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                HANDLER_THREADS,
+                HANDLER_THREADS,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(HANDLER_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     private Object[] resolveMethodArguments(
-            Method method,
-            Map<String, String> pathVariables,
-            HttpExchange exchange
+            Route route,
+            String path,
+            Function<Class<?>, Object> bodyReader,
+            RequestContext context
     ) {
+        Method method = route.handlerMethod();
+        Map<String, String> pathVariables = extractPathVariables(route, path);
         Parameter[] parameters = method.getParameters();
         Object[] args = new Object[parameters.length];
 
         for (int i = 0; i < parameters.length; i++) {
             Parameter parameter = parameters[i];
 
-            if(parameter.isAnnotationPresent(RequestBody.class)) {
-                args[i] = JsonMapper.fromJson(
-                        exchange.getRequestBody(),
-                        parameter.getType()
-                );
+            if (parameter.getType().equals(RequestContext.class)) {
+                args[i] = context;
+            } else if(parameter.isAnnotationPresent(RequestBody.class)) {
+                args[i] = bodyReader.apply(parameter.getType());
             } else if (parameter.isAnnotationPresent(PathVariable.class)) {
                 PathVariable pv = parameter.getAnnotation(PathVariable.class);
 
@@ -123,15 +340,19 @@ public class RequestHandler {
             Route route,
             String requestPath
     ) {
-        Pattern pattern = buildPathPattern(route.path());
-        Matcher matcher = pattern.matcher(requestPath);
+        List<String> names = route.pathVariables();
+
+        if (names.isEmpty()) {
+            return Map.of();
+        }
+
+        Matcher matcher = route.pattern().matcher(requestPath);
 
         if (!matcher.matches()) {
             return Map.of();
         }
 
         Map<String, String> values = new HashMap<>();
-        List<String> names = route.pathVariables();
 
         for (int i = 0; i < names.size(); i++) {
             values.put(names.get(i), matcher.group(i + 1));
@@ -140,11 +361,6 @@ public class RequestHandler {
         return values;
     }
 
-    private Pattern buildPathPattern(String routePath) {
-        String regex = routePath.replaceAll("\\{[^/]+}", "([^/]+)");
-        return Pattern.compile("^" + regex + "$");
-    }
-
     private Object convert(String value, Class<?> type) {
         if (type.equals(String.class)) return value;
         if (type.equals(Integer.class) || type.equals(int.class)) return Integer.valueOf(value);
@@ -4,8 +4,10 @@ import br.com.dende.softhouse.annotations.Component;
 
 import br.com.dende.softhouse.annotations.Controller;
 import br.com.dende.softhouse.annotations.request.*;
+import br.com.dende.softhouse.process.http2.Http2Server;
 import br.com.dende.softhouse.process.route.HTTPMethod;
 import br.com.dende.softhouse.process.route.Route;
+import br.com.dende.softhouse.utils.BufferPool;
 import com.sun.net.httpserver.HttpServer;
 import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ScanResult;
@@ -16,7 +18,10 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -39,9 +44,15 @@ public class WebApplication {
             RequestMapping.class
     );
 
+    private static final int DEFAULT_PORT = 8080;
+
     private final Class<?> mainApplicationClass;
     private final WebApplicationContext webApplicationContext;
     private final RequestHandler requestHandler;
+    private Executor executor;
+    private HttpServer httpServer;
+    private Http2Server http2Server;
+    private ExecutorService http2Executor;
 
     public WebApplication(final Class<?> mainClass) {
         this.mainApplicationClass = mainClass;
@@ -51,14 +62,75 @@ public class WebApplication {
     }
 
     public void run() throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
+        run(DEFAULT_PORT);
+    }
+
+    public void run(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
 
         server.createContext("/", requestHandler::handle);
 
-        server.setExecutor(null); // executor padrão
+        server.setExecutor(executor); // executor padrão quando nulo
+        server.start();
+        this.httpServer = server;
+
+        System.out.println("🚀 Server running at http://localhost:" + port);
+    }
+
+    public void runHttp2() throws IOException {
+        runHttp2(DEFAULT_PORT);
+    }
+
+    public void runHttp2(int port) throws IOException {
+        if (executor == null && http2Executor == null) {
+            http2Executor = RequestHandler.newBoundedExecutor("dende-h2-stream-");
+        }
+
+        Http2Server server = Http2Server.create(
+                new InetSocketAddress(port),
+                requestHandler::handle,
+                executor != null ? executor : http2Executor
+        );
         server.start();
+        this.http2Server = server;
+
+        System.out.println("🚀 Server running at http://localhost:" + port + " (h2c)");
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (http2Server != null) {
+            http2Server.stop();
+            http2Server = null;
+        }
+        if (http2Executor != null) {
+            http2Executor.shutdownNow();
+            http2Executor = null;
+        }
+        requestHandler.shutdown();
+    }
+
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setRequestTimeout(final Duration timeout) {
+        requestHandler.setDefaultTimeout(timeout);
+    }
 
-        System.out.println("🚀 Server running at http://localhost:8080");
+    public void setHandlerExecutor(final ExecutorService executor) {
+        requestHandler.setHandlerExecutor(executor);
+    }
+
+    /**
+     * Largest response buffer, in bytes, kept in the pool between requests.
+     * Defaults to {@link BufferPool#DEFAULT_MAX_RETAINED_SIZE}.
+     */
+    public void setMaxRetainedBufferSize(final int bytes) {
+        requestHandler.getBufferPool().setMaxRetainedSize(bytes);
     }
 
     private void scanComponents() {
@@ -198,6 +270,7 @@ public class WebApplication {
         webApplicationContext.getAllBeans().forEach(bean -> {
             Class<?> clazz = bean.getClass();
             String basePath = extractPath(clazz.getAnnotation(RequestMapping.class));
+            Duration baseTimeout = extractTimeout(clazz.getAnnotation(RequestMapping.class));
 
             Map<String, Route> beanRoutes =
                     Arrays.stream(clazz.getDeclaredMethods())
@@ -205,7 +278,7 @@ public class WebApplication {
                             .flatMap(method ->
                                     extractHttpMethodAnnotation(method)
                                             .map(annotation -> createRouteEntry(
-                                                    basePath, annotation, bean, method
+                                                    basePath, baseTimeout, annotation, bean, method
                                             ))
                                             .stream()
                             )
@@ -221,19 +294,26 @@ public class WebApplication {
 
     private Map.Entry<String, Route> createRouteEntry(
             String basePath,
+            Duration baseTimeout,
             Annotation annotation,
             Object bean,
             Method method
     ) {
         String fullPath = basePath + extractPath(annotation);
         HTTPMethod httpMethod = extractMethod(annotation);
+        Duration timeout = Optional.ofNullable(extractTimeout(annotation)).orElse(baseTimeout);
 
         return entry(
                 fullPath,
-                new Route(httpMethod, fullPath, bean, method, extractPathVariables(fullPath))
+                new Route(httpMethod, fullPath, bean, method, extractPathVariables(fullPath), timeout, compilePathPattern(fullPath))
         );
     }
 
+    private Pattern compilePathPattern(String path) {
+        String regex = path.replaceAll("\\{[^/]+}", "([^/]+)");
+        return Pattern.compile("^" + regex + "$");
+    }
+
     private boolean hasAnyHttpMethodAnnotation(Method method) {
         return HTTP_METHOD_ANNOTATIONS.stream()
                 .anyMatch(method::isAnnotationPresent);
@@ -255,6 +335,16 @@ public class WebApplication {
         }
     }
 
+    private Duration extractTimeout(Annotation annotation) {
+        try {
+            Method timeoutMethod = Objects.nonNull(annotation) ? annotation.annotationType().getMethod("timeoutMillis") : null;
+            long millis = Objects.nonNull(timeoutMethod) ? (long) timeoutMethod.invoke(annotation) : -1;
+            return millis > 0 ? Duration.ofMillis(millis) : null;
+        } catch (Exception e) {
+            throw new RuntimeException("Annotation does not have timeoutMillis attribute", e);
+        }
+    }
+
     private HTTPMethod extractMethod(Annotation annotation) {
 
         if (annotation instanceof RequestMapping requestMapping) {
@@ -293,6 +383,14 @@ public class WebApplication {
         return result;
     }
 
+    public BufferPool getBufferPool() {
+        return requestHandler.getBufferPool();
+    }
+
+    public InProcessClient inProcessClient() {
+        return new InProcessClient(requestHandler, false);
+    }
+
     public WebApplicationContext getContext() {
         return webApplicationContext;
     }
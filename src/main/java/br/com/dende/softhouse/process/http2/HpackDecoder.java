@@ -0,0 +1,127 @@
+package br.com.dende.softhouse.process.http2;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Map.entry;
+
+/**
+ * Decodes HPACK header blocks (RFC 7541). One instance per connection, only
+ * used by the thread reading frames.
+ */
+final class HpackDecoder {
+
+    // per-field overhead of SETTINGS_MAX_HEADER_LIST_SIZE (RFC 9113, section 6.5.2)
+    private static final int HEADER_FIELD_OVERHEAD = 32;
+
+    private final HpackTable table;
+    private final int maxTableSize;
+    private final int maxHeaderListSize;
+
+    HpackDecoder(int maxTableSize, int maxHeaderListSize) {
+        this.table = new HpackTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+    }
+
+    List<Map.Entry<String, String>> decode(byte[] block) throws Http2Exception {
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        ByteBuffer in = ByteBuffer.wrap(block);
+        boolean headerSeen = false;
+        long listSize = 0;
+
+        try {
+            while (in.hasRemaining()) {
+                int b = in.get(in.position()) & 0xFF;
+                int count = headers.size();
+
+                if ((b & 0x80) != 0) {
+                    headers.add(table.get(readInt(in, 7)));
+                    headerSeen = true;
+                } else if ((b & 0xC0) == 0x40) {
+                    Map.Entry<String, String> header = readLiteral(in, 6);
+                    table.add(header.getKey(), header.getValue());
+                    headers.add(header);
+                    headerSeen = true;
+                } else if ((b & 0xE0) == 0x20) {
+                    if (headerSeen) {
+                        throw Http2Exception.compression("Table size update after header field");
+                    }
+                    int size = readInt(in, 5);
+                    if (size > maxTableSize) {
+                        throw Http2Exception.compression("Table size update above limit: " + size);
+                    }
+                    table.setMaxSize(size);
+                } else {
+                    // literal without indexing (0000) or never indexed (0001)
+                    headers.add(readLiteral(in, 4));
+                    headerSeen = true;
+                }
+
+                if (headers.size() > count) {
+                    // indexed fields are tiny on the wire, so the decoded size is what counts
+                    Map.Entry<String, String> field = headers.get(count);
+                    listSize += field.getKey().length() + field.getValue().length() + HEADER_FIELD_OVERHEAD;
+                    if (listSize > maxHeaderListSize) {
+                        throw Http2Exception.connection(
+                                Http2Exception.ENHANCE_YOUR_CALM, "Header list larger than " + maxHeaderListSize);
+                    }
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw Http2Exception.compression("Truncated header block");
+        }
+
+        return headers;
+    }
+
+    private Map.Entry<String, String> readLiteral(ByteBuffer in, int prefixBits) throws Http2Exception {
+        int nameIndex = readInt(in, prefixBits);
+        String name = nameIndex == 0 ? readString(in) : table.get(nameIndex).getKey();
+        return entry(name, readString(in));
+    }
+
+    private String readString(ByteBuffer in) throws Http2Exception {
+        boolean huffman = (in.get(in.position()) & 0x80) != 0;
+        int length = readInt(in, 7);
+        if (length > in.remaining()) {
+            throw Http2Exception.compression("String literal exceeds header block");
+        }
+
+        byte[] bytes;
+        if (huffman) {
+            bytes = Huffman.decode(in.array(), in.position(), length);
+        } else {
+            bytes = new byte[length];
+            System.arraycopy(in.array(), in.position(), bytes, 0, length);
+        }
+        in.position(in.position() + length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    static int readInt(ByteBuffer in, int prefixBits) throws Http2Exception {
+        int max = (1 << prefixBits) - 1;
+        int value = in.get() & max;
+        if (value < max) {
+            return value;
+        }
+
+        long result = value;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get() & 0xFF;
+            result += (long) (b & 0x7F) << shift;
+            shift += 7;
+            if (result > Integer.MAX_VALUE) {
+                throw Http2Exception.compression("Integer overflow in header block");
+            }
+        } while ((b & 0x80) != 0);
+
+        return (int) result;
+    }
+}
@@ -0,0 +1,98 @@
+package br.com.dende.softhouse.process.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes HPACK header blocks (RFC 7541). Repeated response headers are added
+ * to the dynamic table so later responses on the same connection send only an index.
+ * Callers must serialize access, header blocks are order dependent.
+ */
+final class HpackEncoder {
+
+    // values that change on nearly every response would only churn the dynamic table
+    private static final Set<String> NOT_INDEXED = Set.of(
+            "content-length", "date", "etag", "last-modified", "location", "set-cookie", "authorization"
+    );
+
+    private final HpackTable table;
+    private int pendingTableSize = -1;
+
+    HpackEncoder() {
+        this.table = new HpackTable(HpackTable.DEFAULT_SIZE);
+    }
+
+    void setMaxTableSize(int peerMaxSize) {
+        int size = Math.min(peerMaxSize, HpackTable.DEFAULT_SIZE);
+        if (size != table.maxSize()) {
+            table.setMaxSize(size);
+            pendingTableSize = size;
+        }
+    }
+
+    byte[] encode(List<Map.Entry<String, String>> headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+        if (pendingTableSize >= 0) {
+            writeInt(out, 0x20, 5, pendingTableSize);
+            pendingTableSize = -1;
+        }
+
+        for (Map.Entry<String, String> header : headers) {
+            String name = header.getKey();
+            String value = header.getValue();
+            int index = table.find(name, value);
+
+            if (index > 0) {
+                writeInt(out, 0x80, 7, index);
+            } else if (NOT_INDEXED.contains(name)) {
+                writeInt(out, 0x00, 4, -index);
+                if (index == 0) {
+                    writeString(out, name);
+                }
+                writeString(out, value);
+            } else {
+                writeInt(out, 0x40, 6, -index);
+                if (index == 0) {
+                    writeString(out, name);
+                }
+                writeString(out, value);
+                table.add(name, value);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        int huffmanLength = Huffman.encodedLength(bytes);
+
+        if (huffmanLength < bytes.length) {
+            writeInt(out, 0x80, 7, huffmanLength);
+            Huffman.encode(bytes, out);
+        } else {
+            writeInt(out, 0x00, 7, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    static void writeInt(ByteArrayOutputStream out, int mask, int prefixBits, int value) {
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            out.write(mask | value);
+            return;
+        }
+
+        out.write(mask | max);
+        value -= max;
+        while (value >= 0x80) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
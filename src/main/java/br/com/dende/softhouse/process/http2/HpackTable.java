@@ -0,0 +1,174 @@
+package br.com.dende.softhouse.process.http2;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Map.entry;
+
+/**
+ * HPACK static and dynamic header table (RFC 7541, section 2.3). Indexes start at 1
+ * with the static entries, followed by the dynamic entries, newest first.
+ */
+final class HpackTable {
+
+    static final int DEFAULT_SIZE = 4096;
+
+    private static final int ENTRY_OVERHEAD = 32;
+
+    static final List<Map.Entry<String, String>> STATIC_TABLE = List.of(
+            entry(":authority", ""),
+            entry(":method", "GET"),
+            entry(":method", "POST"),
+            entry(":path", "/"),
+            entry(":path", "/index.html"),
+            entry(":scheme", "http"),
+            entry(":scheme", "https"),
+            entry(":status", "200"),
+            entry(":status", "204"),
+            entry(":status", "206"),
+            entry(":status", "304"),
+            entry(":status", "400"),
+            entry(":status", "404"),
+            entry(":status", "500"),
+            entry("accept-charset", ""),
+            entry("accept-encoding", "gzip, deflate"),
+            entry("accept-language", ""),
+            entry("accept-ranges", ""),
+            entry("accept", ""),
+            entry("access-control-allow-origin", ""),
+            entry("age", ""),
+            entry("allow", ""),
+            entry("authorization", ""),
+            entry("cache-control", ""),
+            entry("content-disposition", ""),
+            entry("content-encoding", ""),
+            entry("content-language", ""),
+            entry("content-length", ""),
+            entry("content-location", ""),
+            entry("content-range", ""),
+            entry("content-type", ""),
+            entry("cookie", ""),
+            entry("date", ""),
+            entry("etag", ""),
+            entry("expect", ""),
+            entry("expires", ""),
+            entry("from", ""),
+            entry("host", ""),
+            entry("if-match", ""),
+            entry("if-modified-since", ""),
+            entry("if-none-match", ""),
+            entry("if-range", ""),
+            entry("if-unmodified-since", ""),
+            entry("last-modified", ""),
+            entry("link", ""),
+            entry("location", ""),
+            entry("max-forwards", ""),
+            entry("proxy-authenticate", ""),
+            entry("proxy-authorization", ""),
+            entry("range", ""),
+            entry("referer", ""),
+            entry("refresh", ""),
+            entry("retry-after", ""),
+            entry("server", ""),
+            entry("set-cookie", ""),
+            entry("strict-transport-security", ""),
+            entry("transfer-encoding", ""),
+            entry("user-agent", ""),
+            entry("vary", ""),
+            entry("via", ""),
+            entry("www-authenticate", "")
+    );
+
+    private final ArrayDeque<Map.Entry<String, String>> dynamicEntries;
+    private int size;
+    private int maxSize;
+
+    HpackTable(int maxSize) {
+        this.dynamicEntries = new ArrayDeque<>();
+        this.maxSize = maxSize;
+    }
+
+    Map.Entry<String, String> get(int index) throws Http2Exception {
+        if (index <= 0) {
+            throw Http2Exception.compression("Invalid header index " + index);
+        }
+        if (index <= STATIC_TABLE.size()) {
+            return STATIC_TABLE.get(index - 1);
+        }
+
+        int dynamicIndex = index - STATIC_TABLE.size() - 1;
+        if (dynamicIndex >= dynamicEntries.size()) {
+            throw Http2Exception.compression("Header index out of range " + index);
+        }
+
+        Iterator<Map.Entry<String, String>> it = dynamicEntries.iterator();
+        for (int i = 0; i < dynamicIndex; i++) {
+            it.next();
+        }
+        return it.next();
+    }
+
+    /**
+     * Returns the index of an exact name/value match, or the negated index of
+     * the first entry with the same name, or zero when nothing matches.
+     */
+    int find(String name, String value) {
+        int nameIndex = 0;
+        for (int i = 0; i < STATIC_TABLE.size(); i++) {
+            Map.Entry<String, String> entry = STATIC_TABLE.get(i);
+            if (entry.getKey().equals(name)) {
+                if (entry.getValue().equals(value)) {
+                    return i + 1;
+                }
+                if (nameIndex == 0) {
+                    nameIndex = -(i + 1);
+                }
+            }
+        }
+
+        int index = STATIC_TABLE.size() + 1;
+        for (Map.Entry<String, String> e : dynamicEntries) {
+            if (e.getKey().equals(name)) {
+                if (e.getValue().equals(value)) {
+                    return index;
+                }
+                if (nameIndex == 0) {
+                    nameIndex = -index;
+                }
+            }
+            index++;
+        }
+        return nameIndex;
+    }
+
+    void add(String name, String value) {
+        int entrySize = entrySize(name, value);
+        evict(maxSize - entrySize);
+        if (entrySize <= maxSize) {
+            dynamicEntries.addFirst(entry(name, value));
+            size += entrySize;
+        }
+    }
+
+    void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    int maxSize() {
+        return maxSize;
+    }
+
+    private void evict(int targetSize) {
+        while (size > Math.max(targetSize, 0) && !dynamicEntries.isEmpty()) {
+            Map.Entry<String, String> removed = dynamicEntries.removeLast();
+            size -= entrySize(removed.getKey(), removed.getValue());
+        }
+    }
+
+    private static int entrySize(String name, String value) {
+        return name.length() + value.length() + ENTRY_OVERHEAD;
+    }
+}
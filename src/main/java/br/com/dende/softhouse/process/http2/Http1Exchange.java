@@ -0,0 +1,178 @@
+package br.com.dende.softhouse.process.http2;
+
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves a single HTTP/1.1 request that did not ask for an h2c upgrade.
+ * The connection is closed after the response, so bodies of unknown length are
+ * simply delimited by the close.
+ */
+final class Http1Exchange extends ServerExchange {
+
+    private final OutputStream out;
+    private boolean headersSent;
+
+    Http1Exchange(
+            String method,
+            URI uri,
+            Headers requestHeaders,
+            InputStream in,
+            long contentLength,
+            InetSocketAddress localAddress,
+            InetSocketAddress remoteAddress,
+            OutputStream out
+    ) {
+        super(method, uri, requestHeaders, new FixedLengthInputStream(in, contentLength), localAddress, remoteAddress);
+        this.out = out;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (headersSent) {
+            throw new IOException("headers already sent");
+        }
+
+        StringBuilder head = new StringBuilder("HTTP/1.1 ")
+                .append(rCode).append(' ').append(reasonPhrase(rCode)).append("\r\n");
+        for (Map.Entry<String, List<String>> header : getResponseHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                checkHeader(header.getKey(), value);
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        headersSent = true;
+        responseCode = rCode;
+
+        if (responseLength != 0) {
+            // zero means unknown length, the close delimits the body
+            head.append("Content-Length: ").append(Math.max(responseLength, 0)).append("\r\n");
+        }
+        head.append("Connection: close\r\n\r\n");
+
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (responseLength == -1) {
+            out.flush();
+        }
+    }
+
+    @Override
+    protected OutputStream responseBody() {
+        return out;
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.flush();
+        } catch (IOException ignored) {
+            // connection is closed right after
+        }
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    void complete() throws IOException {
+        if (!headersSent) {
+            // whatever the handler left behind may be what made it fail
+            getResponseHeaders().clear();
+            sendResponseHeaders(500, -1);
+        }
+        close();
+    }
+
+    private static String reasonPhrase(int code) {
+        return switch (code) {
+            case 100 -> "Continue";
+            case 101 -> "Switching Protocols";
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 202 -> "Accepted";
+            case 204 -> "No Content";
+            case 206 -> "Partial Content";
+            case 301 -> "Moved Permanently";
+            case 302 -> "Found";
+            case 303 -> "See Other";
+            case 304 -> "Not Modified";
+            case 307 -> "Temporary Redirect";
+            case 308 -> "Permanent Redirect";
+            case 400 -> "Bad Request";
+            case 401 -> "Unauthorized";
+            case 403 -> "Forbidden";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 406 -> "Not Acceptable";
+            case 408 -> "Request Timeout";
+            case 409 -> "Conflict";
+            case 410 -> "Gone";
+            case 411 -> "Length Required";
+            case 412 -> "Precondition Failed";
+            case 413 -> "Content Too Large";
+            case 415 -> "Unsupported Media Type";
+            case 422 -> "Unprocessable Content";
+            case 429 -> "Too Many Requests";
+            case 431 -> "Request Header Fields Too Large";
+            case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 502 -> "Bad Gateway";
+            case 503 -> "Service Unavailable";
+            case 504 -> "Gateway Timeout";
+            // the reason phrase is optional, the space before it is not
+            default -> "";
+        };
+    }
+
+    /**
+     * Request body delimited by Content-Length, read straight from the connection.
+     */
+    private static final class FixedLengthInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return len == 0 ? 0 : -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+}
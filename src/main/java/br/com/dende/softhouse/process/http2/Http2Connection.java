@@ -0,0 +1,1043 @@
+package br.com.dende.softhouse.process.http2;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Map.entry;
+
+/**
+ * One HTTP/2 cleartext connection (RFC 9113). The thread running this connection
+ * reads frames; every stream is handled on the configured executor and writes its
+ * response back through the shared, synchronized frame writer.
+ */
+final class Http2Connection implements Runnable {
+
+    static final int MAX_FRAME_SIZE = 16384;
+
+    private static final byte[] PREFACE =
+            "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int MAX_LINE_LENGTH = 8192;
+    // the body of an upgrade request has to be read before switching protocols
+    private static final int MAX_UPGRADE_BODY = 64 * 1024;
+    private static final int MAX_CONCURRENT_STREAMS = 128;
+    // handlers that may block on a request body at once, well below any executor size
+    private static final int MAX_RECEIVING_STREAMS = 4;
+    private static final int MAX_HEADER_LIST_SIZE = 16 * 1024;
+    // a header block fits in one or two frames, anything longer is a CONTINUATION flood
+    private static final int MAX_CONTINUATION_FRAMES = 8;
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    private static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final HttpHandler handler;
+    private final Executor executor;
+    private final int idleTimeoutMillis;
+    private final Map<Integer, Http2Stream> streams;
+    // streams whose handler has not returned yet, reset or not
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final HpackDecoder decoder;
+    private final HpackEncoder encoder;
+
+    private final Object writeLock = new Object();
+    private final Object flowLock = new Object();
+    private final Object receiveLock = new Object();
+
+    // guarded by receiveLock; streams whose body is still to come wait here, in arrival
+    // order, while MAX_RECEIVING_STREAMS handlers are already reading theirs
+    private final Map<Integer, Http2Exchange> parkedStreams = new LinkedHashMap<>();
+    private int receivingStreams;
+
+    // guarded by flowLock
+    private int sendWindow = DEFAULT_WINDOW_SIZE;
+    private int peerInitialWindowSize = DEFAULT_WINDOW_SIZE;
+    private boolean closed;
+
+    private volatile int peerMaxFrameSize = MAX_FRAME_SIZE;
+
+    // only written by the reader thread, read by shutdown()
+    private volatile int lastStreamId;
+    private volatile boolean framing;
+
+    // only touched by the reader thread
+    private int continuationStreamId;
+    private int continuationFrames;
+    private boolean continuationEndStream;
+    private final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+
+    Http2Connection(Socket socket, HttpHandler handler, Executor executor, int idleTimeoutMillis) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream(), MAX_FRAME_SIZE + 9);
+        this.handler = handler;
+        this.executor = executor;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.streams = new ConcurrentHashMap<>();
+        this.decoder = new HpackDecoder(HpackTable.DEFAULT_SIZE, MAX_HEADER_LIST_SIZE);
+        this.encoder = new HpackEncoder();
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (openConnection()) {
+                readFrames();
+            }
+        } catch (Http2Exception e) {
+            goAway(e.errorCode());
+        } catch (IOException ignored) {
+            // peer went away
+        } catch (RuntimeException e) {
+            if (framing) {
+                goAway(Http2Exception.INTERNAL_ERROR);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Reads either the prior-knowledge preface or an HTTP/1.1 request. Returns
+     * false when the request was served over HTTP/1.1 and the connection is done.
+     */
+    private boolean openConnection() throws IOException {
+        String requestLine = readLine();
+        if (requestLine == null) {
+            return false;
+        }
+
+        if (requestLine.equals("PRI * HTTP/2.0")) {
+            byte[] rest = readFully(PREFACE.length - requestLine.length() - 2);
+            if (!Arrays.equals(rest, Arrays.copyOfRange(PREFACE, requestLine.length() + 2, PREFACE.length))) {
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Invalid connection preface");
+            }
+            framing = true;
+            writeSettings();
+            return true;
+        }
+
+        String[] parts = requestLine.split(" ");
+        if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+            return false;
+        }
+
+        Headers headers = new Headers();
+        int headerBytes = 0;
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            headerBytes += line.length();
+            if (headerBytes > MAX_HEADER_LIST_SIZE) {
+                writeRaw("HTTP/1.1 431 Request Header Fields Too Large\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+                return false;
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+
+        String transferEncoding = headers.getFirst("Transfer-Encoding");
+        if (transferEncoding != null && !transferEncoding.equalsIgnoreCase("identity")) {
+            writeRaw("HTTP/1.1 501 Not Implemented\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+            return false;
+        }
+
+        long length = contentLength(headers.get("Content-Length"));
+        if (length < 0) {
+            writeRaw("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+            return false;
+        }
+
+        String upgrade = headers.getFirst("Upgrade");
+        String settings = headers.getFirst("HTTP2-Settings");
+        if (upgrade == null || settings == null || !upgrade.trim().equalsIgnoreCase("h2c")
+                || length > MAX_UPGRADE_BODY) {
+            serveHttp1(parts[0], parts[1], headers, length);
+            return false;
+        }
+
+        return upgrade(parts[0], parts[1], headers, settings, readFully((int) length));
+    }
+
+    /**
+     * Returns the declared body length, zero when there is none, or -1 when the
+     * values are malformed or disagree with each other.
+     */
+    private static long contentLength(List<String> values) {
+        if (values == null) {
+            return 0;
+        }
+
+        long length = -1;
+        for (String value : values) {
+            String digits = value.trim();
+            if (digits.isEmpty() || digits.length() > 18 || !digits.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                return -1;
+            }
+            long parsed = Long.parseLong(digits);
+            if (length != -1 && parsed != length) {
+                return -1;
+            }
+            length = parsed;
+        }
+        return length;
+    }
+
+    private boolean upgrade(
+            String method,
+            String target,
+            Headers headers,
+            String settings,
+            byte[] body
+    ) throws IOException {
+        byte[] clientSettings;
+        try {
+            clientSettings = Base64.getUrlDecoder().decode(settings.trim());
+        } catch (IllegalArgumentException e) {
+            serveHttp1(method, target, headers, new ByteArrayInputStream(body), body.length);
+            return false;
+        }
+
+        writeRaw("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n");
+        framing = true;
+        writeSettings();
+        applySettings(clientSettings);
+
+        // the upgraded request becomes stream 1, already half-closed by the client
+        List<Map.Entry<String, String>> requestHeaders = new ArrayList<>();
+        requestHeaders.add(entry(":method", method));
+        requestHeaders.add(entry(":scheme", "http"));
+        requestHeaders.add(entry(":path", target));
+        String host = headers.getFirst("Host");
+        if (host != null) {
+            requestHeaders.add(entry(":authority", host));
+        }
+        headers.forEach((name, values) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (!lower.equals("host") && !lower.equals("connection") && !lower.equals("upgrade")
+                    && !lower.equals("http2-settings")) {
+                values.forEach(value -> requestHeaders.add(entry(lower, value)));
+            }
+        });
+
+        Http2Stream stream = openStream(1, requestHeaders);
+        stream.requestBody().receive(ByteBuffer.wrap(body), 0);
+        stream.closeRemote();
+        lastStreamId = 1;
+        start(stream);
+
+        byte[] preface = readFully(PREFACE.length);
+        if (!Arrays.equals(preface, PREFACE)) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Invalid connection preface");
+        }
+        return true;
+    }
+
+    private void serveHttp1(String method, String target, Headers headers, long contentLength) throws IOException {
+        serveHttp1(method, target, headers, in, contentLength);
+    }
+
+    private void serveHttp1(
+            String method,
+            String target,
+            Headers headers,
+            InputStream body,
+            long contentLength
+    ) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(target);
+        } catch (IllegalArgumentException e) {
+            writeRaw("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+            return;
+        }
+
+        Http1Exchange exchange = new Http1Exchange(
+                method, uri, headers, body, contentLength, localAddress(), remoteAddress(), out
+        );
+        try {
+            handler.handle(exchange);
+        } finally {
+            exchange.complete();
+        }
+    }
+
+    private void readFrames() throws IOException {
+        byte[] header = new byte[9];
+
+        while (true) {
+            if (!readFrameHeader(header)) {
+                return;
+            }
+
+            int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+            int type = header[3] & 0xFF;
+            int flags = header[4] & 0xFF;
+            int streamId = readInt(header, 5) & 0x7FFFFFFF;
+
+            if (length > MAX_FRAME_SIZE) {
+                throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Frame too large: " + length);
+            }
+            byte[] payload = readFully(length);
+
+            if (continuationStreamId != 0 && (type != CONTINUATION || streamId != continuationStreamId)) {
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Expected CONTINUATION frame");
+            }
+
+            try {
+                switch (type) {
+                    case DATA -> onData(streamId, flags, payload);
+                    case HEADERS -> onHeaders(streamId, flags, payload);
+                    case PRIORITY -> onPriority(streamId, payload);
+                    case RST_STREAM -> onRstStream(streamId, payload);
+                    case SETTINGS -> onSettings(streamId, flags, payload);
+                    case PUSH_PROMISE -> throw Http2Exception.connection(
+                            Http2Exception.PROTOCOL_ERROR, "Client sent PUSH_PROMISE");
+                    case PING -> onPing(streamId, flags, payload);
+                    case GOAWAY -> onGoAway(streamId);
+                    case WINDOW_UPDATE -> onWindowUpdate(streamId, payload);
+                    case CONTINUATION -> onContinuation(streamId, flags, payload);
+                    default -> {
+                        // unknown frame types must be ignored
+                    }
+                }
+            } catch (Http2Exception e) {
+                if (e.streamId() == 0) {
+                    throw e;
+                }
+                resetStream(e.streamId(), e.errorCode());
+            }
+        }
+    }
+
+    private void onData(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "DATA on stream 0");
+        }
+
+        // the connection window is handed back on receipt, what a stream may buffer
+        // is bounded by its own window, which is reopened as the handler reads
+        if (payload.length > 0) {
+            writeWindowUpdate(0, payload.length);
+        }
+
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.isRemoteClosed()) {
+            throw closedOrIdle(streamId);
+        }
+
+        int[] bounds = stripPadding(flags, payload, 0);
+        int refund = stream.requestBody().receive(ByteBuffer.wrap(payload, bounds[0], bounds[1]), payload.length);
+
+        if ((flags & FLAG_END_STREAM) != 0) {
+            stream.closeRemote();
+            if (stream.isFinished()) {
+                streams.remove(streamId);
+            }
+            receiveEnded(stream);
+        } else if (refund > 0) {
+            writeWindowUpdate(streamId, refund);
+        }
+    }
+
+    private void onHeaders(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId == 0 || streamId % 2 == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Invalid stream id " + streamId);
+        }
+
+        int[] bounds = stripPadding(flags, payload, (flags & FLAG_PRIORITY) != 0 ? 5 : 0);
+        headerBlock.reset();
+        appendHeaderBlock(payload, bounds[0], bounds[1]);
+        continuationFrames = 0;
+        continuationEndStream = (flags & FLAG_END_STREAM) != 0;
+
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            completeHeaders(streamId);
+        } else {
+            continuationStreamId = streamId;
+        }
+    }
+
+    private void onContinuation(int streamId, int flags, byte[] payload) throws IOException {
+        if (continuationStreamId == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Unexpected CONTINUATION frame");
+        }
+
+        if (++continuationFrames > MAX_CONTINUATION_FRAMES) {
+            throw Http2Exception.connection(Http2Exception.ENHANCE_YOUR_CALM, "Too many CONTINUATION frames");
+        }
+        appendHeaderBlock(payload, 0, payload.length);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            continuationStreamId = 0;
+            completeHeaders(streamId);
+        }
+    }
+
+    private void appendHeaderBlock(byte[] payload, int offset, int length) throws Http2Exception {
+        // legitimate encodings are smaller than the field list they carry, so the block gets the same cap
+        if (headerBlock.size() + length > MAX_HEADER_LIST_SIZE) {
+            throw Http2Exception.connection(
+                    Http2Exception.ENHANCE_YOUR_CALM, "Header block larger than " + MAX_HEADER_LIST_SIZE);
+        }
+        headerBlock.write(payload, offset, length);
+    }
+
+    private void completeHeaders(int streamId) throws IOException {
+        // always decode, the HPACK state is shared by every stream of the connection
+        List<Map.Entry<String, String>> headers = decoder.decode(headerBlock.toByteArray());
+        boolean endStream = continuationEndStream;
+
+        Http2Stream existing = streams.get(streamId);
+        if (existing != null) {
+            // trailers: accepted but not exposed to handlers
+            if (existing.isRemoteClosed()) {
+                throw Http2Exception.stream(Http2Exception.STREAM_CLOSED, streamId, "Stream already closed");
+            }
+            if (!endStream) {
+                throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Trailers without END_STREAM");
+            }
+            existing.closeRemote();
+            if (existing.isFinished()) {
+                streams.remove(streamId);
+            }
+            receiveEnded(existing);
+            return;
+        }
+
+        // stream ids only grow, reusing one is a connection error (RFC 9113, section 5.1.1)
+        if (streamId <= lastStreamId) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Stream " + streamId + " reused");
+        }
+        lastStreamId = streamId;
+
+        if (activeStreams.get() + parkedCount() >= MAX_CONCURRENT_STREAMS) {
+            throw Http2Exception.stream(Http2Exception.REFUSED_STREAM, streamId, "Too many concurrent streams");
+        }
+
+        Http2Stream stream = openStream(streamId, headers);
+        if (endStream) {
+            stream.closeRemote();
+        }
+        start(stream);
+    }
+
+    private Http2Stream openStream(int streamId, List<Map.Entry<String, String>> headers) {
+        Http2Stream stream;
+        synchronized (flowLock) {
+            stream = new Http2Stream(this, streamId, headers, peerInitialWindowSize);
+        }
+        streams.put(streamId, stream);
+        return stream;
+    }
+
+    private void onPriority(int streamId, byte[] payload) throws Http2Exception {
+        if (streamId == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "PRIORITY on stream 0");
+        }
+        if (payload.length != 5) {
+            throw Http2Exception.stream(Http2Exception.FRAME_SIZE_ERROR, streamId, "Invalid PRIORITY frame");
+        }
+        // prioritization is advisory and not implemented
+    }
+
+    private void onRstStream(int streamId, byte[] payload) throws Http2Exception {
+        if (streamId == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "RST_STREAM on stream 0");
+        }
+        if (payload.length != 4) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid RST_STREAM frame");
+        }
+
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            synchronized (flowLock) {
+                stream.reset();
+                flowLock.notifyAll();
+            }
+            receiveEnded(stream);
+        }
+    }
+
+    private void onSettings(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId != 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "SETTINGS on stream " + streamId);
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            if (payload.length != 0) {
+                throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "SETTINGS ACK with payload");
+            }
+            return;
+        }
+
+        applySettings(payload);
+        writeFrame(SETTINGS, FLAG_ACK, 0, new byte[0]);
+    }
+
+    private void applySettings(byte[] payload) throws IOException {
+        if (payload.length % 6 != 0) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid SETTINGS frame");
+        }
+
+        for (int i = 0; i < payload.length; i += 6) {
+            int id = ((payload[i] & 0xFF) << 8) | (payload[i + 1] & 0xFF);
+            int value = readInt(payload, i + 2);
+
+            switch (id) {
+                case SETTINGS_HEADER_TABLE_SIZE -> {
+                    synchronized (writeLock) {
+                        encoder.setMaxTableSize(value < 0 ? Integer.MAX_VALUE : value);
+                    }
+                }
+                case SETTINGS_ENABLE_PUSH -> {
+                    if (value != 0 && value != 1) {
+                        throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Invalid ENABLE_PUSH");
+                    }
+                }
+                case SETTINGS_INITIAL_WINDOW_SIZE -> {
+                    if (value < 0) {
+                        throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "Invalid INITIAL_WINDOW_SIZE");
+                    }
+                    synchronized (flowLock) {
+                        int delta = value - peerInitialWindowSize;
+                        peerInitialWindowSize = value;
+                        for (Http2Stream stream : streams.values()) {
+                            if ((long) stream.sendWindow + delta > MAX_WINDOW_SIZE) {
+                                throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "Window overflow");
+                            }
+                            stream.sendWindow += delta;
+                        }
+                        flowLock.notifyAll();
+                    }
+                }
+                case SETTINGS_MAX_FRAME_SIZE -> {
+                    if (value < MAX_FRAME_SIZE || value > 0xFFFFFF) {
+                        throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Invalid MAX_FRAME_SIZE");
+                    }
+                    peerMaxFrameSize = value;
+                }
+                default -> {
+                    // MAX_CONCURRENT_STREAMS only limits pushes, unknown settings are ignored
+                }
+            }
+        }
+    }
+
+    private void onPing(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId != 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "PING on stream " + streamId);
+        }
+        if (payload.length != 8) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid PING frame");
+        }
+        if ((flags & FLAG_ACK) == 0) {
+            writeFrame(PING, FLAG_ACK, 0, payload);
+        }
+    }
+
+    private void onGoAway(int streamId) throws Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "GOAWAY on stream " + streamId);
+        }
+        // the client opens no new streams, running ones finish and the client closes the socket
+    }
+
+    private void onWindowUpdate(int streamId, byte[] payload) throws Http2Exception {
+        if (payload.length != 4) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE frame");
+        }
+
+        int increment = readInt(payload, 0) & 0x7FFFFFFF;
+        if (increment == 0) {
+            throw streamId == 0
+                    ? Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Zero window increment")
+                    : Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Zero window increment");
+        }
+
+        synchronized (flowLock) {
+            if (streamId == 0) {
+                if ((long) sendWindow + increment > MAX_WINDOW_SIZE) {
+                    throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "Window overflow");
+                }
+                sendWindow += increment;
+            } else {
+                Http2Stream stream = streams.get(streamId);
+                if (stream == null) {
+                    return;
+                }
+                if ((long) stream.sendWindow + increment > MAX_WINDOW_SIZE) {
+                    throw Http2Exception.stream(Http2Exception.FLOW_CONTROL_ERROR, streamId, "Window overflow");
+                }
+                stream.sendWindow += increment;
+            }
+            flowLock.notifyAll();
+        }
+    }
+
+    private Http2Exception closedOrIdle(int streamId) {
+        return streamId <= lastStreamId
+                ? Http2Exception.stream(Http2Exception.STREAM_CLOSED, streamId, "Stream " + streamId + " closed")
+                : Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Stream " + streamId + " idle");
+    }
+
+    /**
+     * Hands a new stream to its handler. A stream whose body is still to come is parked
+     * while {@link #MAX_RECEIVING_STREAMS} handlers already wait for theirs, so a client
+     * that announces bodies and never sends them cannot tie up the executor.
+     */
+    private void start(Http2Stream stream) throws Http2Exception {
+        Http2Exchange exchange;
+        try {
+            exchange = createExchange(stream);
+        } catch (IllegalArgumentException e) {
+            throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, stream.id(), e.getMessage());
+        }
+
+        if (!stream.isRemoteClosed()) {
+            synchronized (receiveLock) {
+                parkedStreams.put(stream.id(), exchange);
+            }
+            dispatchParked();
+        } else if (!dispatch(exchange)) {
+            throw Http2Exception.stream(Http2Exception.REFUSED_STREAM, stream.id(), "Executor rejected stream");
+        }
+    }
+
+    private void dispatchParked() {
+        while (true) {
+            Http2Exchange exchange;
+            synchronized (receiveLock) {
+                if (receivingStreams >= MAX_RECEIVING_STREAMS || parkedStreams.isEmpty()) {
+                    return;
+                }
+                Iterator<Http2Exchange> parked = parkedStreams.values().iterator();
+                exchange = parked.next();
+                parked.remove();
+                if (!exchange.stream().isRemoteClosed()) {
+                    exchange.stream().receiving = true;
+                    receivingStreams++;
+                }
+            }
+            if (!dispatch(exchange)) {
+                resetStream(exchange.stream().id(), Http2Exception.REFUSED_STREAM);
+            }
+        }
+    }
+
+    /**
+     * Called once a stream waits for no more body frames: the body ended, the stream was
+     * reset or its handler returned. A parked stream is started or dropped, a running one
+     * makes room for the next parked stream.
+     */
+    private void receiveEnded(Http2Stream stream) {
+        Http2Exchange parked;
+        synchronized (receiveLock) {
+            parked = parkedStreams.remove(stream.id());
+            if (parked == null && stream.receiving) {
+                stream.receiving = false;
+                receivingStreams--;
+            }
+        }
+
+        if (parked != null && !stream.isReset() && !dispatch(parked)) {
+            resetStream(stream.id(), Http2Exception.REFUSED_STREAM);
+        }
+        dispatchParked();
+    }
+
+    private int parkedCount() {
+        synchronized (receiveLock) {
+            return parkedStreams.size();
+        }
+    }
+
+    private boolean dispatch(Http2Exchange exchange) {
+        Http2Stream stream = exchange.stream();
+        activeStreams.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    handler.handle(exchange);
+                    exchange.complete();
+                } catch (IOException | RuntimeException e) {
+                    failStream(stream, exchange);
+                } finally {
+                    streamFinished(stream);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            activeStreams.decrementAndGet();
+            return false;
+        }
+    }
+
+    private void failStream(Http2Stream stream, Http2Exchange exchange) {
+        try {
+            if (exchange.fail()) {
+                return;
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // the 500 could not be sent either
+        }
+        resetStream(stream.id(), Http2Exception.INTERNAL_ERROR);
+    }
+
+    private Http2Exchange createExchange(Http2Stream stream) {
+        String method = null;
+        String path = null;
+        Headers headers = new Headers();
+
+        for (Map.Entry<String, String> header : stream.requestHeaders()) {
+            switch (header.getKey()) {
+                case ":method" -> method = header.getValue();
+                case ":path" -> path = header.getValue();
+                case ":authority" -> headers.add("Host", header.getValue());
+                case ":scheme" -> {
+                    // cleartext only
+                }
+                default -> {
+                    if (header.getKey().startsWith(":")) {
+                        throw new IllegalArgumentException("Unknown pseudo-header " + header.getKey());
+                    }
+                    headers.add(header.getKey(), header.getValue());
+                }
+            }
+        }
+
+        if (method == null || path == null) {
+            throw new IllegalArgumentException("Missing :method or :path pseudo-header");
+        }
+
+        return new Http2Exchange(
+                this, stream, method, URI.create(path), headers, localAddress(), remoteAddress()
+        );
+    }
+
+    void writeHeaders(Http2Stream stream, List<Map.Entry<String, String>> headers, boolean endStream) throws IOException {
+        if (stream.isReset()) {
+            throw new IOException("Stream " + stream.id() + " was reset");
+        }
+
+        synchronized (writeLock) {
+            byte[] block = encoder.encode(headers);
+            int maxFrameSize = peerMaxFrameSize;
+            int offset = 0;
+            boolean first = true;
+
+            do {
+                int chunk = Math.min(block.length - offset, maxFrameSize);
+                int flags = offset + chunk == block.length ? FLAG_END_HEADERS : 0;
+                if (first && endStream) {
+                    flags |= FLAG_END_STREAM;
+                }
+                writeFrameHeader(chunk, first ? HEADERS : CONTINUATION, flags, stream.id());
+                out.write(block, offset, chunk);
+                offset += chunk;
+                first = false;
+            } while (offset < block.length);
+
+            out.flush();
+        }
+
+    }
+
+    void writeData(Http2Stream stream, byte[] data, int offset, int length, boolean endStream) throws IOException {
+        if (length == 0 && !endStream) {
+            return;
+        }
+
+        do {
+            int chunk = length == 0 ? 0 : reserveWindow(stream, length);
+            boolean last = endStream && chunk == length;
+
+            synchronized (writeLock) {
+                writeFrameHeader(chunk, DATA, last ? FLAG_END_STREAM : 0, stream.id());
+                out.write(data, offset, chunk);
+                out.flush();
+            }
+
+            offset += chunk;
+            length -= chunk;
+        } while (length > 0);
+    }
+
+    private int reserveWindow(Http2Stream stream, int wanted) throws IOException {
+        synchronized (flowLock) {
+            while (true) {
+                if (closed) {
+                    throw new IOException("Connection closed");
+                }
+                if (stream.isReset()) {
+                    throw new IOException("Stream " + stream.id() + " was reset");
+                }
+
+                int available = Math.min(Math.min(sendWindow, stream.sendWindow), peerMaxFrameSize);
+                if (available > 0) {
+                    int chunk = Math.min(available, wanted);
+                    sendWindow -= chunk;
+                    stream.sendWindow -= chunk;
+                    return chunk;
+                }
+
+                try {
+                    flowLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for flow control window");
+                }
+            }
+        }
+    }
+
+    private void streamFinished(Http2Stream stream) {
+        activeStreams.decrementAndGet();
+        stream.finish();
+        if (stream.isRemoteClosed() || stream.isReset()) {
+            streams.remove(stream.id());
+        } else {
+            // the client is still sending a body the handler did not read; it is drained
+            // rather than reset, since clients may not take a response before their upload ends
+            int refund = stream.requestBody().discard();
+            if (refund > 0) {
+                try {
+                    writeWindowUpdate(stream.id(), refund);
+                } catch (IOException ignored) {
+                    // connection is going away anyway
+                }
+            }
+        }
+        receiveEnded(stream);
+    }
+
+    private void resetStream(int streamId, int errorCode) {
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            synchronized (flowLock) {
+                stream.reset();
+                flowLock.notifyAll();
+            }
+            receiveEnded(stream);
+        }
+
+        try {
+            writeFrame(RST_STREAM, 0, streamId, intBytes(errorCode));
+        } catch (IOException ignored) {
+            // connection is going away anyway
+        }
+    }
+
+    private void goAway(int errorCode) {
+        byte[] payload = new byte[8];
+        System.arraycopy(intBytes(lastStreamId), 0, payload, 0, 4);
+        System.arraycopy(intBytes(errorCode), 0, payload, 4, 4);
+        try {
+            writeFrame(GOAWAY, 0, 0, payload);
+        } catch (IOException ignored) {
+            // connection is going away anyway
+        }
+    }
+
+    private void writeSettings() throws IOException {
+        byte[] payload = new byte[12];
+        payload[1] = SETTINGS_MAX_CONCURRENT_STREAMS;
+        System.arraycopy(intBytes(MAX_CONCURRENT_STREAMS), 0, payload, 2, 4);
+        payload[7] = SETTINGS_MAX_HEADER_LIST_SIZE;
+        System.arraycopy(intBytes(MAX_HEADER_LIST_SIZE), 0, payload, 8, 4);
+        writeFrame(SETTINGS, 0, 0, payload);
+    }
+
+    int idleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    void writeWindowUpdate(int streamId, int increment) throws IOException {
+        writeFrame(WINDOW_UPDATE, 0, streamId, intBytes(increment));
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+        synchronized (writeLock) {
+            writeFrameHeader(payload.length, type, flags, streamId);
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    private void writeFrameHeader(int length, int type, int flags, int streamId) throws IOException {
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+        out.write(type);
+        out.write(flags);
+        out.write(intBytes(streamId & 0x7FFFFFFF));
+    }
+
+    private void writeRaw(String text) throws IOException {
+        synchronized (writeLock) {
+            out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+    }
+
+    private boolean readFrameHeader(byte[] header) throws IOException {
+        int first;
+        while (true) {
+            try {
+                first = in.read();
+                break;
+            } catch (SocketTimeoutException e) {
+                // quiet is fine while handlers are still working on responses
+                if (activeStreams.get() == 0) {
+                    goAway(Http2Exception.NO_ERROR);
+                    return false;
+                }
+            }
+        }
+        if (first < 0) {
+            return false;
+        }
+        header[0] = (byte) first;
+        byte[] rest = readFully(header.length - 1);
+        System.arraycopy(rest, 0, header, 1, rest.length);
+        return true;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Connection closed mid-frame");
+        }
+        return bytes;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                int end = line.length();
+                return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Request line too long");
+            }
+            line.append((char) b);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private int[] stripPadding(int flags, byte[] payload, int skip) throws Http2Exception {
+        int start = skip;
+        int padding = 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (payload.length == 0) {
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Missing pad length");
+            }
+            padding = payload[0] & 0xFF;
+            start++;
+        }
+        int length = payload.length - start - padding;
+        if (length < 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "Padding exceeds payload");
+        }
+        return new int[]{start, length};
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private InetSocketAddress localAddress() {
+        return (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    private InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) socket.getRemoteSocketAddress();
+    }
+
+    /**
+     * Ends the connection from outside the reader thread, when the server stops.
+     */
+    void shutdown() {
+        if (framing) {
+            goAway(Http2Exception.NO_ERROR);
+        }
+        close();
+    }
+
+    private void close() {
+        synchronized (flowLock) {
+            closed = true;
+            // the client is gone, handlers still running see their request cancelled
+            for (Http2Stream stream : streams.values()) {
+                stream.reset();
+            }
+            flowLock.notifyAll();
+        }
+        synchronized (receiveLock) {
+            parkedStreams.clear();
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // nothing left to do
+        }
+    }
+}
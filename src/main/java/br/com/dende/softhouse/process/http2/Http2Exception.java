@@ -0,0 +1,51 @@
+package br.com.dende.softhouse.process.http2;
+
+import java.io.IOException;
+
+/**
+ * Protocol error raised while processing frames. A stream id of zero means the
+ * whole connection has to be torn down with GOAWAY, otherwise only the stream is reset.
+ */
+class Http2Exception extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int NO_ERROR = 0x0;
+    static final int PROTOCOL_ERROR = 0x1;
+    static final int INTERNAL_ERROR = 0x2;
+    static final int FLOW_CONTROL_ERROR = 0x3;
+    static final int STREAM_CLOSED = 0x5;
+    static final int FRAME_SIZE_ERROR = 0x6;
+    static final int REFUSED_STREAM = 0x7;
+    static final int COMPRESSION_ERROR = 0x9;
+    static final int ENHANCE_YOUR_CALM = 0xb;
+
+    private final int errorCode;
+    private final int streamId;
+
+    Http2Exception(int errorCode, int streamId, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    static Http2Exception connection(int errorCode, String message) {
+        return new Http2Exception(errorCode, 0, message);
+    }
+
+    static Http2Exception stream(int errorCode, int streamId, String message) {
+        return new Http2Exception(errorCode, streamId, message);
+    }
+
+    static Http2Exception compression(String message) {
+        return connection(COMPRESSION_ERROR, message);
+    }
+
+    int errorCode() {
+        return errorCode;
+    }
+
+    int streamId() {
+        return streamId;
+    }
+}
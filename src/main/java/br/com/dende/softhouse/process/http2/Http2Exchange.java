@@ -0,0 +1,214 @@
+package br.com.dende.softhouse.process.http2;
+
+import br.com.dende.softhouse.process.RequestHandler;
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.Map.entry;
+
+/**
+ * Exchange bound to one HTTP/2 stream. Response headers become a HEADERS frame and
+ * the body is written as DATA frames subject to flow control.
+ */
+final class Http2Exchange extends ServerExchange {
+
+    // connection-specific fields are not allowed in HTTP/2 (RFC 9113, section 8.2.2)
+    private static final Set<String> CONNECTION_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade"
+    );
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final Http2Connection connection;
+    private final Http2Stream stream;
+    private final DataFrameOutputStream body;
+    private boolean headersSent;
+
+    Http2Exchange(
+            Http2Connection connection,
+            Http2Stream stream,
+            String method,
+            URI uri,
+            Headers requestHeaders,
+            InetSocketAddress localAddress,
+            InetSocketAddress remoteAddress
+    ) {
+        super(method, uri, requestHeaders, stream.requestBody(), localAddress, remoteAddress);
+        this.connection = connection;
+        this.stream = stream;
+        this.body = new DataFrameOutputStream();
+        setAttribute(RequestHandler.CANCELLATION_ATTRIBUTE, stream.cancellation());
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (headersSent) {
+            throw new IOException("headers already sent");
+        }
+
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        headers.add(entry(":status", Integer.toString(rCode)));
+        for (Map.Entry<String, List<String>> header : getResponseHeaders().entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            if (CONNECTION_HEADERS.contains(name) || name.equals("content-length")) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                checkHeader(name, value);
+                headers.add(entry(name, value));
+            }
+        }
+        if (responseLength > 0) {
+            headers.add(entry("content-length", Long.toString(responseLength)));
+        }
+        headersSent = true;
+        responseCode = rCode;
+
+        boolean endStream = responseLength == -1;
+        connection.writeHeaders(stream, headers, endStream);
+        if (endStream) {
+            body.closed = true;
+        } else if (responseLength > 0) {
+            body.remaining = responseLength;
+        }
+    }
+
+    Http2Stream stream() {
+        return stream;
+    }
+
+    @Override
+    protected OutputStream responseBody() {
+        return body;
+    }
+
+    @Override
+    public void close() {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // stream was reset or the connection is gone
+        }
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/2.0";
+    }
+
+    void complete() throws IOException {
+        if (!headersSent) {
+            // whatever the handler left behind may be what made it fail
+            getResponseHeaders().clear();
+            sendResponseHeaders(500, -1);
+        }
+        body.close();
+    }
+
+    /**
+     * Answers 500 for a handler that threw before responding. Once the headers are
+     * out the response cannot be taken back, and false is returned so the stream is reset.
+     */
+    boolean fail() throws IOException {
+        if (headersSent) {
+            return false;
+        }
+        complete();
+        return true;
+    }
+
+    /**
+     * Writes the caller's bytes straight into DATA frames, without copying them into a
+     * per-stream buffer. Only single-byte writes are staged, in a buffer allocated on first use.
+     */
+    private final class DataFrameOutputStream extends OutputStream {
+
+        private static final int SINGLE_BYTE_BUFFER_SIZE = 1024;
+
+        // bytes still to come when the response length was declared, -1 otherwise
+        private long remaining = -1;
+        private byte[] singleBytes;
+        private int count;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (singleBytes == null) {
+                singleBytes = new byte[SINGLE_BYTE_BUFFER_SIZE];
+            } else if (count == singleBytes.length) {
+                flushSingleBytes();
+            }
+            reserve(1);
+            singleBytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            ensureOpen();
+            flushSingleBytes();
+            reserve(len);
+            // the last bytes of a declared length carry END_STREAM, sparing an empty frame
+            boolean last = remaining == 0;
+            connection.writeData(stream, b, off, len, last);
+            closed = last;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ensureOpen();
+            flushSingleBytes();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (headersSent) {
+                connection.writeData(stream, singleBytes != null ? singleBytes : NO_BYTES, 0, count, true);
+                count = 0;
+            }
+        }
+
+        private void reserve(int len) throws IOException {
+            ensureHeadersSent();
+            if (remaining >= 0) {
+                if (len > remaining) {
+                    throw new IOException("response body exceeds the declared length");
+                }
+                remaining -= len;
+            }
+        }
+
+        private void flushSingleBytes() throws IOException {
+            if (count > 0) {
+                connection.writeData(stream, singleBytes, 0, count, false);
+                count = 0;
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("stream is closed");
+            }
+        }
+
+        private void ensureHeadersSent() throws IOException {
+            if (!headersSent) {
+                throw new IOException("response headers not sent yet");
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package br.com.dende.softhouse.process.http2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request body of one stream, read by the handler while DATA frames are still
+ * arriving. The stream window is only handed back once the handler has consumed
+ * the bytes, so a body nobody reads never buffers more than one window.
+ */
+final class Http2RequestBody extends InputStream {
+
+    // the window is reopened in batches, or right away when the reader runs dry
+    private static final int UPDATE_THRESHOLD = Http2Stream.RECEIVE_WINDOW / 2;
+
+    private final Http2Connection connection;
+    private final int streamId;
+    private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<>();
+
+    // guarded by this
+    private int receiveWindow = Http2Stream.RECEIVE_WINDOW;
+    private int consumed;
+    private boolean finished;
+    private boolean cancelled;
+    private boolean discarding;
+
+    Http2RequestBody(Http2Connection connection, int streamId) {
+        this.connection = connection;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Queues the data of one DATA frame. {@code flowControlled} is the whole frame
+     * length, padding included, which is what the client charged to the window.
+     * Returns the window to hand back right away, which is only the case once the
+     * handler is done and the rest of the body is being discarded.
+     */
+    synchronized int receive(ByteBuffer data, int flowControlled) throws Http2Exception {
+        if (flowControlled > receiveWindow) {
+            throw Http2Exception.stream(Http2Exception.FLOW_CONTROL_ERROR, streamId, "Stream window exceeded");
+        }
+        receiveWindow -= flowControlled;
+
+        if (discarding) {
+            consumed += flowControlled;
+            return takeRefund(1);
+        }
+
+        // padding is never read, its share of the window goes back with the next update
+        consumed += flowControlled - data.remaining();
+        if (data.hasRemaining()) {
+            chunks.add(data);
+        }
+        notifyAll();
+        return 0;
+    }
+
+    /**
+     * Drops whatever the handler did not read and keeps the window open until the
+     * client ends the stream. Returns the window to hand back right away.
+     */
+    synchronized int discard() {
+        discarding = true;
+        for (ByteBuffer chunk : chunks) {
+            consumed += chunk.remaining();
+        }
+        chunks.clear();
+        return takeRefund(1);
+    }
+
+    synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    synchronized void cancel() {
+        cancelled = true;
+        chunks.clear();
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            int refund;
+            int b = -1;
+            synchronized (this) {
+                ensureNotCancelled();
+                ByteBuffer chunk = chunks.peek();
+                if (chunk != null) {
+                    b = chunk.get() & 0xFF;
+                    consumed(chunk, 1);
+                    refund = takeRefund(UPDATE_THRESHOLD);
+                } else if (finished) {
+                    return -1;
+                } else {
+                    refund = awaitData();
+                }
+            }
+            sendRefund(refund);
+            if (b >= 0) {
+                return b;
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+
+        while (true) {
+            int refund;
+            int read = 0;
+            synchronized (this) {
+                ensureNotCancelled();
+                ByteBuffer chunk = chunks.peek();
+                if (chunk != null) {
+                    read = Math.min(len, chunk.remaining());
+                    chunk.get(b, off, read);
+                    consumed(chunk, read);
+                    refund = takeRefund(UPDATE_THRESHOLD);
+                } else if (finished) {
+                    return -1;
+                } else {
+                    refund = awaitData();
+                }
+            }
+            sendRefund(refund);
+            if (read > 0) {
+                return read;
+            }
+        }
+    }
+
+    @Override
+    public synchronized int available() {
+        int available = 0;
+        for (ByteBuffer chunk : chunks) {
+            available += chunk.remaining();
+        }
+        return available;
+    }
+
+    private void consumed(ByteBuffer chunk, int count) {
+        consumed += count;
+        if (!chunk.hasRemaining()) {
+            chunks.poll();
+        }
+    }
+
+    /**
+     * Waits for the next frame, at most the connection idle timeout. When there is window
+     * to give back the client may be stalled on it, so instead of waiting the refund is
+     * returned to be sent first.
+     */
+    private int awaitData() throws InterruptedIOException {
+        int refund = takeRefund(1);
+        if (refund > 0) {
+            return refund;
+        }
+
+        long timeout = TimeUnit.MILLISECONDS.toNanos(connection.idleTimeoutMillis());
+        long deadline = System.nanoTime() + timeout;
+        try {
+            while (chunks.isEmpty() && !finished && !cancelled) {
+                if (timeout == 0) {
+                    wait();
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("Timed out waiting for request body of stream " + streamId);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading request body");
+        }
+        return 0;
+    }
+
+    private int takeRefund(int threshold) {
+        // once the client ended the stream the window is of no use anymore
+        if (finished || consumed < threshold) {
+            return 0;
+        }
+        int refund = consumed;
+        consumed = 0;
+        receiveWindow += refund;
+        return refund;
+    }
+
+    private void sendRefund(int refund) throws IOException {
+        if (refund > 0) {
+            connection.writeWindowUpdate(streamId, refund);
+        }
+    }
+
+    private void ensureNotCancelled() throws IOException {
+        if (cancelled) {
+            throw new IOException("Stream " + streamId + " was reset");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package br.com.dende.softhouse.process.http2;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * HTTP/2 cleartext (h2c) server. Accepts both prior-knowledge connections and
+ * HTTP/1.1 Upgrade requests; plain HTTP/1.1 requests are served once and closed.
+ * Each connection multiplexes its streams onto the given executor.
+ */
+public final class Http2Server {
+
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ServerSocket serverSocket;
+    private final HttpHandler handler;
+    private final Executor executor;
+    private final Set<Http2Connection> connections = ConcurrentHashMap.newKeySet();
+    private Thread acceptor;
+    private volatile boolean running;
+    private volatile int idleTimeoutMillis = (int) DEFAULT_IDLE_TIMEOUT.toMillis();
+
+    private Http2Server(ServerSocket serverSocket, HttpHandler handler, Executor executor) {
+        this.serverSocket = serverSocket;
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    public static Http2Server create(
+            InetSocketAddress address,
+            HttpHandler handler,
+            Executor executor
+    ) throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address);
+        return new Http2Server(serverSocket, handler, executor);
+    }
+
+    public void start() {
+        running = true;
+        acceptor = new Thread(this::accept, "dende-h2-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Stops accepting and closes every open connection, sending GOAWAY first so clients
+     * know to open a new one rather than wait on this.
+     */
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+        for (Http2Connection connection : connections) {
+            connection.shutdown();
+        }
+    }
+
+    /**
+     * How long a connection may send nothing while no handler is running on it, and
+     * how long a handler waits for the next piece of its request body. Zero waits forever.
+     */
+    public void setIdleTimeout(Duration timeout) {
+        this.idleTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(idleTimeoutMillis);
+
+                Http2Connection connection = new Http2Connection(socket, handler, executor, idleTimeoutMillis);
+                connections.add(connection);
+
+                Thread thread = new Thread(() -> {
+                    try {
+                        connection.run();
+                    } finally {
+                        connections.remove(connection);
+                    }
+                }, "dende-h2-connection-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+
+                if (!running) {
+                    // stop() ran while this connection was being accepted
+                    connection.shutdown();
+                }
+            } catch (SocketException e) {
+                // server socket closed by stop()
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package br.com.dende.softhouse.process.http2;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * State of a single HTTP/2 stream. Request fields are only touched by the
+ * connection reader, the send window is guarded by the connection flow lock.
+ */
+final class Http2Stream {
+
+    // receive window of every stream, no other SETTINGS_INITIAL_WINDOW_SIZE is advertised
+    static final int RECEIVE_WINDOW = 65535;
+
+    private final int id;
+    private final List<Map.Entry<String, String>> requestHeaders;
+    private final Http2RequestBody requestBody;
+    private final CompletableFuture<Void> cancellation;
+
+    int sendWindow;
+    // guarded by the connection receive lock
+    boolean receiving;
+    private volatile boolean remoteClosed;
+    private volatile boolean reset;
+    private volatile boolean finished;
+
+    Http2Stream(Http2Connection connection, int id, List<Map.Entry<String, String>> requestHeaders, int sendWindow) {
+        this.id = id;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = new Http2RequestBody(connection, id);
+        this.cancellation = new CompletableFuture<>();
+        this.sendWindow = sendWindow;
+    }
+
+    int id() {
+        return id;
+    }
+
+    List<Map.Entry<String, String>> requestHeaders() {
+        return requestHeaders;
+    }
+
+    Http2RequestBody requestBody() {
+        return requestBody;
+    }
+
+    /**
+     * Completes when the stream is reset, so that a handler still running can stop.
+     */
+    CompletableFuture<Void> cancellation() {
+        return cancellation;
+    }
+
+    boolean isRemoteClosed() {
+        return remoteClosed;
+    }
+
+    void closeRemote() {
+        remoteClosed = true;
+        requestBody.finish();
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    void finish() {
+        finished = true;
+    }
+
+    boolean isReset() {
+        return reset;
+    }
+
+    void reset() {
+        reset = true;
+        requestBody.cancel();
+        cancellation.complete(null);
+    }
+}
@@ -0,0 +1,131 @@
+package br.com.dende.softhouse.process.http2;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Static Huffman code from RFC 7541, Appendix B. The code is canonical, so
+ * only the bit length of each symbol is kept and the codes are derived from it.
+ */
+final class Huffman {
+
+    private static final int EOS = 256;
+
+    private static final byte[] LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+            5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+            6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+            30
+    };
+
+    private static final int[] CODES = new int[LENGTHS.length];
+
+    // Binary decoding trie: children[node * 2 + bit], leaves hold ~symbol
+    private static final int[] TRIE;
+
+    static {
+        int code = 0;
+        int previousLength = 0;
+        for (int length = 1; length <= 30; length++) {
+            for (int symbol = 0; symbol < LENGTHS.length; symbol++) {
+                if (LENGTHS[symbol] == length) {
+                    code <<= length - previousLength;
+                    previousLength = length;
+                    CODES[symbol] = code++;
+                }
+            }
+        }
+
+        int[] trie = new int[2 * 2 * LENGTHS.length];
+        int nodes = 1;
+        for (int symbol = 0; symbol < LENGTHS.length; symbol++) {
+            int node = 0;
+            for (int bit = LENGTHS[symbol] - 1; bit >= 0; bit--) {
+                int slot = node * 2 + ((CODES[symbol] >>> bit) & 1);
+                if (bit == 0) {
+                    trie[slot] = ~symbol;
+                } else {
+                    if (trie[slot] == 0) {
+                        trie[slot] = nodes++;
+                    }
+                    node = trie[slot];
+                }
+            }
+        }
+        TRIE = trie;
+    }
+
+    private Huffman() {}
+
+    static int encodedLength(byte[] value) {
+        long bits = 0;
+        for (byte b : value) {
+            bits += LENGTHS[b & 0xFF];
+        }
+        return (int) ((bits + 7) / 8);
+    }
+
+    static void encode(byte[] value, ByteArrayOutputStream out) {
+        long buffer = 0;
+        int bits = 0;
+        for (byte b : value) {
+            int symbol = b & 0xFF;
+            buffer = (buffer << LENGTHS[symbol]) | CODES[symbol];
+            bits += LENGTHS[symbol];
+            while (bits >= 8) {
+                bits -= 8;
+                out.write((int) (buffer >>> bits));
+            }
+        }
+        if (bits > 0) {
+            // pad with the most significant bits of EOS (all ones)
+            out.write((int) ((buffer << (8 - bits)) | (0xFF >>> bits)));
+        }
+    }
+
+    static byte[] decode(byte[] data, int offset, int length) throws Http2Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length * 2);
+        int node = 0;
+        int depth = 0;
+        boolean allOnes = true;
+
+        for (int i = offset; i < offset + length; i++) {
+            for (int bit = 7; bit >= 0; bit--) {
+                int b = (data[i] >>> bit) & 1;
+                int next = TRIE[node * 2 + b];
+                allOnes &= b == 1;
+                depth++;
+                if (next < 0) {
+                    if (~next == EOS) {
+                        throw Http2Exception.compression("EOS symbol in Huffman string");
+                    }
+                    out.write(~next);
+                    node = 0;
+                    depth = 0;
+                    allOnes = true;
+                } else if (next == 0) {
+                    throw Http2Exception.compression("Invalid Huffman code");
+                } else {
+                    node = next;
+                }
+            }
+        }
+
+        if (depth > 7 || !allOnes) {
+            throw Http2Exception.compression("Invalid Huffman padding");
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,154 @@
+package br.com.dende.softhouse.process.http2;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request side of an {@link HttpExchange} backed by this engine's own connections,
+ * so that {@code RequestHandler} can serve requests coming from them unchanged.
+ */
+abstract class ServerExchange extends HttpExchange {
+
+    private final String method;
+    private final URI uri;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders;
+    private final InetSocketAddress localAddress;
+    private final InetSocketAddress remoteAddress;
+    private final Map<String, Object> attributes;
+
+    private InputStream requestBody;
+    private OutputStream responseBodyOverride;
+    protected int responseCode = -1;
+
+    ServerExchange(
+            String method,
+            URI uri,
+            Headers requestHeaders,
+            InputStream requestBody,
+            InetSocketAddress localAddress,
+            InetSocketAddress remoteAddress
+    ) {
+        this.method = method;
+        this.uri = uri;
+        this.requestHeaders = requestHeaders;
+        this.responseHeaders = new Headers();
+        this.requestBody = requestBody;
+        this.localAddress = localAddress;
+        this.remoteAddress = remoteAddress;
+        this.attributes = new HashMap<>();
+    }
+
+    protected abstract OutputStream responseBody();
+
+    /**
+     * Rejects response header fields that could end their line, or their HPACK field,
+     * early and smuggle in headers or a body of their own.
+     */
+    static void checkHeader(String name, String value) throws IOException {
+        if (name.isEmpty()) {
+            throw new IOException("Empty response header name");
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c <= ' ' || c >= 0x7F || c == ':') {
+                throw new IOException("Invalid response header name: " + name);
+            }
+        }
+        for (int i = 0; value != null && i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == 0) {
+                throw new IOException("Invalid value for response header " + name);
+            }
+        }
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBodyOverride != null ? responseBodyOverride : responseBody();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            this.requestBody = i;
+        }
+        if (o != null) {
+            this.responseBodyOverride = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+}
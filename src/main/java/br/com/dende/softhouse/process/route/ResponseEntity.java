@@ -1,5 +1,7 @@
 package br.com.dende.softhouse.process.route;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ResponseEntity<T> {
@@ -22,6 +24,12 @@ public class ResponseEntity<T> {
         return new ResponseEntity<>(status, body, Map.of());
     }
 
+    public ResponseEntity<T> header(String name, String value) {
+        Map<String, String> merged = new LinkedHashMap<>(headers);
+        merged.put(name, value);
+        return new ResponseEntity<>(status, body, Collections.unmodifiableMap(merged));
+    }
+
     public int status() {
         return status;
     }
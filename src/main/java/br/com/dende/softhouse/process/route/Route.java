@@ -1,12 +1,16 @@
 package br.com.dende.softhouse.process.route;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public record Route(
         HTTPMethod method,
         String path,
         Object controller,
         Method handlerMethod,
-        List<String> pathVariables
+        List<String> pathVariables,
+        Duration timeout,
+        Pattern pattern
         ) { }
@@ -0,0 +1,118 @@
+package br.com.dende.softhouse.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped pool of reusable response buffers. Each thread maps to a stripe of a few
+ * slots, so threads of a fixed pool keep reusing the same buffers without contention,
+ * and acquiring or releasing a buffer never allocates once the pool is warm.
+ * Buffers that grew past the retention limit while serving a large response are
+ * dropped on release, so the pool never holds more than
+ * {@code capacity * maxRetainedSize} bytes.
+ */
+public final class BufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_RETAINED_SIZE = 64 * 1024;
+    private static final int SLOTS_PER_STRIPE = 4;
+
+    private final AtomicReferenceArray<PooledBuffer> slots;
+    private final int stripeMask;
+    private final int bufferSize;
+    private volatile int maxRetainedSize;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    public BufferPool() {
+        this(Runtime.getRuntime().availableProcessors() * 2, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RETAINED_SIZE);
+    }
+
+    public BufferPool(int stripes, int bufferSize, int maxRetainedSize) {
+        int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(stripeCount * SLOTS_PER_STRIPE);
+        this.stripeMask = stripeCount - 1;
+        this.bufferSize = bufferSize;
+        this.maxRetainedSize = maxRetainedSize;
+    }
+
+    /**
+     * Largest buffer, in bytes, kept for reuse. Buffers that grew beyond it are
+     * left to the garbage collector.
+     */
+    public void setMaxRetainedSize(int maxRetainedSize) {
+        if (maxRetainedSize < bufferSize) {
+            throw new IllegalArgumentException(
+                    "Retention limit " + maxRetainedSize + " is smaller than the buffer size " + bufferSize
+            );
+        }
+        this.maxRetainedSize = maxRetainedSize;
+    }
+
+    public int getMaxRetainedSize() {
+        return maxRetainedSize;
+    }
+
+    public PooledBuffer acquire() {
+        acquired.increment();
+        int base = stripeBase();
+
+        for (int i = base; i < base + SLOTS_PER_STRIPE; i++) {
+            if (slots.get(i) != null) {
+                PooledBuffer buffer = slots.getAndSet(i, null);
+                if (buffer != null) {
+                    hits.increment();
+                    return buffer;
+                }
+            }
+        }
+        return new PooledBuffer(this, bufferSize);
+    }
+
+    void release(PooledBuffer buffer) {
+        buffer.reset();
+        if (buffer.capacity() <= maxRetainedSize) {
+            int base = stripeBase();
+            for (int i = base; i < base + SLOTS_PER_STRIPE; i++) {
+                if (slots.get(i) == null && slots.compareAndSet(i, null, buffer)) {
+                    return;
+                }
+            }
+        }
+        discarded.increment();
+    }
+
+    public Stats stats() {
+        int pooled = 0;
+        long pooledBytes = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            PooledBuffer buffer = slots.get(i);
+            if (buffer != null) {
+                pooled++;
+                pooledBytes += buffer.capacity();
+            }
+        }
+        return new Stats(slots.length(), pooled, pooledBytes, acquired.sum(), hits.sum(), discarded.sum());
+    }
+
+    private int stripeBase() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & stripeMask) * SLOTS_PER_STRIPE;
+    }
+
+    public record Stats(
+            int capacity,
+            int pooled,
+            long pooledBytes,
+            long acquired,
+            long hits,
+            long discarded
+    ) {
+        public double hitRate() {
+            return acquired == 0 ? 0 : (double) hits / acquired;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 public final class JsonMapper {
 
@@ -38,6 +39,30 @@ public final class JsonMapper {
         }
     }
 
+    public static <T> T fromJson(byte[] body, Class<T> type) {
+        try {
+            return MAPPER.readValue(body, type);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON body", e);
+        }
+    }
+
+    public static <T> T convert(Object value, Class<T> type) {
+        try {
+            return MAPPER.convertValue(value, type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cannot convert " + value.getClass().getName() + " to " + type.getName(), e);
+        }
+    }
+
+    public static void writeJson(Object value, OutputStream out) {
+        try {
+            MAPPER.writeValue(out, value);
+        } catch (Exception e) {
+            throw new RuntimeException("JSON serialization error", e);
+        }
+    }
+
     public static byte[] toJson(Object value) {
         try {
             return MAPPER.writeValueAsBytes(value);
@@ -0,0 +1,99 @@
+package br.com.dende.softhouse.utils;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer borrowed from a {@link BufferPool}. Callers write the response
+ * into it, hand {@link #array()} and {@link #size()} to the transport and then
+ * {@link #release()} it. Not thread-safe.
+ */
+public final class PooledBuffer extends OutputStream {
+
+    private final BufferPool pool;
+    private byte[] bytes;
+    private int count;
+
+    PooledBuffer(BufferPool pool, int capacity) {
+        this.pool = pool;
+        this.bytes = new byte[capacity];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        bytes[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, bytes, count, len);
+        count += len;
+    }
+
+    /**
+     * Encodes the characters as UTF-8 straight into the buffer, without the
+     * intermediate array {@code String#getBytes} would allocate.
+     */
+    public void writeUtf8(CharSequence text) {
+        int length = text.length();
+        ensureCapacity(count + length);
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (count == bytes.length) {
+                    ensureCapacity(count + 1);
+                }
+                bytes[count++] = (byte) c;
+            } else {
+                ensureCapacity(count + 4);
+                if (c < 0x800) {
+                    bytes[count++] = (byte) (0xC0 | (c >> 6));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[count++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // unpaired surrogate, same replacement String#getBytes uses
+                    bytes[count++] = '?';
+                } else {
+                    bytes[count++] = (byte) (0xE0 | (c >> 12));
+                    bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    int capacity() {
+        return bytes.length;
+    }
+
+    public void release() {
+        pool.release(this);
+    }
+
+    void reset() {
+        count = 0;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.process.fixtures.inprocess.InProcessApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Requests per second of the same JSON route served over HTTP/1.1 keep-alive and over
+ * h2c, with the same number of requests in flight, the same handler pool and Nagle off. Only runs with DENDE_BENCHMARK=true:
+ *
+ * <pre>DENDE_BENCHMARK=true ./gradlew test --tests "*Http2ThroughputBenchmark"</pre>
+ */
+@EnabledIfEnvironmentVariable(named = "DENDE_BENCHMARK", matches = "true")
+class Http2ThroughputBenchmark {
+
+    private static final int WARMUP_REQUESTS = 5_000;
+    private static final int MEASURED_REQUESTS = 50_000;
+    private static final int IN_FLIGHT = 64;
+    private static final int HANDLER_THREADS = 16;
+
+    private static ExecutorService handlers;
+    private static WebApplication application;
+    private static int http1Port;
+    private static int http2Port;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        // read once when the JDK server is first used; with Nagle on, HTTP/1.1 manages a few dozen req/s
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        http1Port = freePort();
+        http2Port = freePort();
+        handlers = Executors.newFixedThreadPool(HANDLER_THREADS);
+        application = new WebApplication(InProcessApplication.class);
+        // the same pool for both engines, the JDK server would otherwise dispatch on one thread
+        application.setExecutor(handlers);
+        application.run(http1Port);
+        application.runHttp2(http2Port);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        application.stop();
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void http2AgainstHttp1() {
+        // HTTP/1.1 opens a connection per request in flight, h2c multiplexes them over one
+        HttpClient http1 = client(HttpClient.Version.HTTP_1_1);
+        HttpClient http2 = client(HttpClient.Version.HTTP_2);
+
+        run(http1, http1Port, WARMUP_REQUESTS);
+        run(http2, http2Port, WARMUP_REQUESTS);
+
+        double http1Rate = run(http1, http1Port, MEASURED_REQUESTS);
+        double http2Rate = run(http2, http2Port, MEASURED_REQUESTS);
+
+        System.out.printf("HTTP/1.1 %,10.0f req/s%n", http1Rate);
+        System.out.printf("h2c      %,10.0f req/s  (%.2fx)%n", http2Rate, http2Rate / http1Rate);
+    }
+
+    /**
+     * Sends the requests keeping {@link #IN_FLIGHT} outstanding and returns requests per second.
+     */
+    private static double run(HttpClient client, int port, int requests) {
+        Semaphore inFlight = new Semaphore(IN_FLIGHT);
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquireUninterruptibly();
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + port + "/items/" + i)
+            ).build();
+
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(responses).exceptionally(error -> null).join();
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(0, failures.get(), "failed requests");
+        return requests * 1e9 / elapsed;
+    }
+
+    private static HttpClient client(HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
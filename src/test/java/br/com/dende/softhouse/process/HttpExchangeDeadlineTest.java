@@ -0,0 +1,222 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.annotations.request.RequestBody;
+import br.com.dende.softhouse.process.route.HTTPMethod;
+import br.com.dende.softhouse.process.route.Route;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deadlines on the {@link com.sun.net.httpserver.HttpExchange} path, the one both
+ * network transports take, driven through stub exchanges and the JDK server.
+ */
+class HttpExchangeDeadlineTest {
+
+    private static volatile CountDownLatch interrupted = new CountDownLatch(1);
+    private static volatile CountDownLatch cancelled = new CountDownLatch(1);
+
+    private static RequestHandler handler;
+    private static ExecutorService serverExecutor;
+    private static HttpServer server;
+
+    @BeforeAll
+    static void setUp() throws NoSuchMethodException, IOException {
+        Controller controller = new Controller();
+        handler = new RequestHandler(Map.of(
+                "/upload", new Route(HTTPMethod.POST, "/upload", controller,
+                        Controller.class.getMethod("upload", String.class), List.of(), Duration.ofMillis(200),
+                        Pattern.compile("^/upload$")),
+                "/sleep", new Route(HTTPMethod.GET, "/sleep", controller,
+                        Controller.class.getMethod("sleep"), List.of(), null,
+                        Pattern.compile("^/sleep$")),
+                "/stuck", new Route(HTTPMethod.GET, "/stuck", controller,
+                        Controller.class.getMethod("stuck"), List.of(), Duration.ofMillis(100),
+                        Pattern.compile("^/stuck$")),
+                "/context", new Route(HTTPMethod.GET, "/context", controller,
+                        Controller.class.getMethod("awaitCancellation", RequestContext.class), List.of(), null,
+                        Pattern.compile("^/context$"))
+        ));
+
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", handler::handle);
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        handler.shutdown();
+    }
+
+    @Test
+    void routeTimeoutAnswers504AndInterruptsHandler() throws IOException, InterruptedException {
+        interrupted = new CountDownLatch(1);
+        StubExchange exchange = new StubExchange("/stuck");
+
+        handler.handle(exchange);
+
+        assertEquals(504, exchange.status());
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "handler was not interrupted");
+    }
+
+    @Test
+    void timeoutHeaderAnswers504() throws IOException {
+        StubExchange exchange = new StubExchange("/stuck");
+        exchange.getRequestHeaders().add(RequestHandler.TIMEOUT_HEADER, "20");
+
+        long start = System.nanoTime();
+        handler.handle(exchange);
+
+        assertEquals(504, exchange.status());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100), "header did not shorten timeout");
+    }
+
+    @Test
+    void cancellationAttributeCancelsTheRequestContext() throws InterruptedException {
+        cancelled = new CountDownLatch(1);
+        CompletableFuture<Void> disconnect = new CompletableFuture<>();
+        StubExchange exchange = new StubExchange("/context");
+        exchange.setAttribute(RequestHandler.CANCELLATION_ATTRIBUTE, disconnect);
+
+        Thread request = new Thread(() -> {
+            try {
+                handler.handle(exchange);
+            } catch (IOException ignored) {
+                // the status is what is checked
+            }
+        });
+        request.start();
+        Thread.sleep(50);
+        disconnect.complete(null);
+
+        assertTrue(cancelled.await(2, TimeUnit.SECONDS), "request context was not cancelled");
+        request.join(2_000);
+    }
+
+    @Test
+    void routeTimeoutAnswers504OverTheJdkServer() throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + server.getAddress().getPort() + "/stuck")
+                ).timeout(Duration.ofSeconds(5)).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        assertEquals(504, response.statusCode());
+    }
+
+    @Test
+    void stalledRequestBodyCountsAgainstDeadline() throws IOException, InterruptedException {
+        StalledBody body = new StalledBody();
+        StubExchange exchange = new StubExchange("POST", "/upload", body);
+
+        long start = System.nanoTime();
+        handler.handle(exchange);
+
+        assertEquals(504, exchange.status());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "deadline did not bound the body read");
+        assertTrue(body.interrupted.await(2, TimeUnit.SECONDS), "body read was not interrupted");
+    }
+
+    @Test
+    void oversizedTimeoutHeaderDoesNotOverflow() throws IOException {
+        StubExchange exchange = new StubExchange("/sleep");
+        exchange.getRequestHeaders().add(RequestHandler.TIMEOUT_HEADER, "10000000000000");
+
+        handler.handle(exchange);
+
+        assertEquals(200, exchange.status());
+    }
+
+    @Test
+    void oversizedDefaultTimeoutDoesNotOverflow() throws IOException {
+        handler.setDefaultTimeout(Duration.ofMillis(Long.MAX_VALUE));
+        try {
+            StubExchange exchange = new StubExchange("/sleep");
+
+            handler.handle(exchange);
+
+            assertEquals(200, exchange.status());
+        } finally {
+            handler.setDefaultTimeout(null);
+        }
+    }
+
+    public static class Controller {
+
+        public String upload(@RequestBody String body) {
+            return body;
+        }
+
+        public String sleep() throws InterruptedException {
+            Thread.sleep(10);
+            return "done";
+        }
+
+        public String stuck() throws InterruptedException {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "late";
+        }
+
+        public String awaitCancellation(RequestContext context) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!context.isCancelled() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            if (context.isCancelled()) {
+                cancelled.countDown();
+            }
+            return "done";
+        }
+    }
+
+    /**
+     * Request body whose client never sends a byte.
+     */
+    private static final class StalledBody extends InputStream {
+
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public int read() throws IOException {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new InterruptedIOException("request body read interrupted");
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.process.fixtures.inprocess.InProcessApplication;
+import br.com.dende.softhouse.process.fixtures.inprocess.Item;
+import br.com.dende.softhouse.process.fixtures.inprocess.ItemController;
+import br.com.dende.softhouse.process.fixtures.inprocess.ItemName;
+import br.com.dende.softhouse.process.route.HTTPMethod;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InProcessClientTest {
+
+    private static WebApplication application;
+    private static InProcessClient client;
+
+    @BeforeAll
+    static void setUp() {
+        application = new WebApplication(InProcessApplication.class);
+        client = application.inProcessClient();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        application.stop();
+    }
+
+    @Test
+    void routesToHandlerWithPathVariable() {
+        InProcessResponse response = client.send(InProcessRequest.get("/items/7"));
+
+        assertEquals(200, response.status());
+        assertEquals(new Item(7L, "item-7"), response.body(Item.class));
+        assertEquals("{\"id\":7,\"name\":\"item-7\"}", response.bodyAsString());
+    }
+
+    @Test
+    void unknownRouteAnswers404() {
+        InProcessResponse response = client.send(InProcessRequest.get("/missing"));
+
+        assertEquals(404, response.status());
+        assertEquals(0, response.body().length);
+    }
+
+    @Test
+    void wrongMethodAnswers404() {
+        assertEquals(404, client.send(InProcessRequest.of(HTTPMethod.DELETE, "/items/7")).status());
+    }
+
+    @Test
+    void plainResultIsSentAsText() {
+        InProcessResponse response = client.send(InProcessRequest.get("/items/3/name"));
+
+        assertEquals(200, response.status());
+        assertEquals("item-3", response.bodyAsString());
+        assertEquals("item-3", response.body(String.class));
+    }
+
+    @Test
+    void plainResultIsSentAsTextInPassThrough() {
+        InProcessResponse response = client.passThrough().send(InProcessRequest.get("/items/3/name"));
+
+        assertEquals("item-3", response.bodyAsString());
+        assertEquals("item-3", response.body(String.class));
+    }
+
+    @Test
+    void responseEntityStatusAndHeaders() {
+        InProcessResponse response = client.send(InProcessRequest.post("/items/create").body(new Item(9L, "nine")));
+
+        assertEquals(201, response.status());
+        assertEquals("/items/9", response.headers().get("Location"));
+        assertEquals(new Item(9L, "nine"), response.body(Item.class));
+    }
+
+    @Test
+    void responseEntityWithoutBody() {
+        InProcessResponse response = client.send(InProcessRequest.get("/items/empty"));
+
+        assertEquals(204, response.status());
+        assertEquals(0, response.body().length);
+    }
+
+    @Test
+    void jsonBodyIsSerialized() {
+        Item item = new Item(1L, "one");
+
+        client.send(InProcessRequest.post("/items/create").body(item));
+
+        assertEquals(item, ItemController.lastBody);
+        assertNotSame(item, ItemController.lastBody);
+    }
+
+    @Test
+    void rawBodyIsParsed() {
+        byte[] json = "{\"id\":2,\"name\":\"two\"}".getBytes(StandardCharsets.UTF_8);
+
+        InProcessResponse response = client.send(InProcessRequest.post("/items/create").rawBody(json));
+
+        assertEquals(201, response.status());
+        assertEquals(new Item(2L, "two"), ItemController.lastBody);
+    }
+
+    @Test
+    void jsonBodyIsConvertedToParameterType() {
+        client.send(InProcessRequest.post("/items/rename").body(new Item(4L, "four")));
+
+        assertEquals(new ItemName("four"), ItemController.lastBody);
+    }
+
+    @Test
+    void passThroughHandsOverMatchingInstance() {
+        Item item = new Item(5L, "five");
+
+        InProcessResponse response = client.passThrough().send(InProcessRequest.post("/items/create").body(item));
+
+        assertSame(item, ItemController.lastBody);
+        assertSame(item, response.body(Item.class));
+        assertEquals("{\"id\":5,\"name\":\"five\"}", response.bodyAsString());
+    }
+
+    @Test
+    void passThroughConvertsMismatchedTypes() {
+        InProcessResponse response = client.passThrough()
+                .send(InProcessRequest.post("/items/rename").body(new Item(6L, "six")));
+
+        assertEquals(new ItemName("six"), ItemController.lastBody);
+        assertEquals(new Item(null, "six"), response.body(Item.class));
+    }
+
+    @Test
+    void handlerFailureAnswers500() {
+        InProcessResponse response = client.send(InProcessRequest.get("/items/broken"));
+
+        assertEquals(500, response.status());
+        assertInstanceOf(IllegalStateException.class, response.error().orElseThrow());
+    }
+
+    @Test
+    void invalidBodyAnswers500() {
+        InProcessResponse response = client.send(
+                InProcessRequest.post("/items/create").rawBody("not json".getBytes(StandardCharsets.UTF_8))
+        );
+
+        assertEquals(500, response.status());
+        assertInstanceOf(IllegalArgumentException.class, response.error().orElseThrow());
+    }
+
+    @Test
+    void timeoutAnswers504() {
+        InProcessResponse response = client.send(InProcessRequest.get("/items/slow"));
+
+        assertEquals(504, response.status());
+        assertInstanceOf(TimeoutException.class, response.error().orElseThrow());
+        assertTrue(response.bodyAsString().isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.annotations.request.PathVariable;
+import br.com.dende.softhouse.process.route.HTTPMethod;
+import br.com.dende.softhouse.process.route.ResponseEntity;
+import br.com.dende.softhouse.process.route.Route;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation budget of {@link RequestHandler#handle(HttpExchange)}, measured with the
+ * per-thread allocation counter after the JIT has warmed up. The exchange is reused,
+ * so only what the framework allocates per request is counted.
+ *
+ * <p>Target: at most {@value #TEXT_BUDGET} bytes per request for a plain result and
+ * {@value #JSON_BUDGET} bytes for a {@code ResponseEntity} serialized to JSON. When the
+ * target was set the two measured about 1.0 KB and 1.2 KB, mostly argument resolution,
+ * reflective invocation and the request context; response bytes go through pooled
+ * buffers and route patterns are compiled once, so neither grows with the response.
+ */
+class RequestAllocationTest {
+
+    static final long TEXT_BUDGET = 1536;
+    static final long JSON_BUDGET = 2048;
+
+    private static final int WARMUP = 50_000;
+    private static final int MEASURED = 20_000;
+
+    private static RequestHandler handler;
+
+    @BeforeAll
+    static void setUp() throws NoSuchMethodException {
+        Controller controller = new Controller();
+        handler = new RequestHandler(Map.of(
+                "/text/{id}", new Route(HTTPMethod.GET, "/text/{id}", controller,
+                        Controller.class.getMethod("text", Long.class), List.of("id"), null,
+                        Pattern.compile("^/text/([^/]+)$")),
+                "/json", new Route(HTTPMethod.GET, "/json", controller,
+                        Controller.class.getMethod("json"), List.of(), null,
+                        Pattern.compile("^/json$"))
+        ));
+    }
+
+    @Test
+    void textResponseStaysWithinBudget() throws IOException {
+        long bytes = allocatedPerRequest(new StubExchange("/text/42"));
+        assertTrue(bytes <= TEXT_BUDGET, "text response allocated " + bytes + " bytes/request");
+    }
+
+    @Test
+    void jsonResponseStaysWithinBudget() throws IOException {
+        long bytes = allocatedPerRequest(new StubExchange("/json"));
+        assertTrue(bytes <= JSON_BUDGET, "json response allocated " + bytes + " bytes/request");
+    }
+
+    private long allocatedPerRequest(StubExchange exchange) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            handler.handle(exchange);
+        }
+        assertEquals(200, exchange.status());
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED; i++) {
+            handler.handle(exchange);
+        }
+        long after = threads.getThreadAllocatedBytes(thread);
+
+        return (after - before) / MEASURED;
+    }
+
+    public static class Controller {
+
+        private static final String TEXT = "hello world ".repeat(40);
+        private static final Item ITEM = new Item("widget", 3, List.of("a", "b", "c"));
+
+        public String text(@PathVariable(parameter = "id") Long id) {
+            return TEXT;
+        }
+
+        public ResponseEntity<Item> json() {
+            return ResponseEntity.ok(ITEM);
+        }
+    }
+
+    public record Item(String name, int quantity, List<String> tags) {
+    }
+}
@@ -0,0 +1,133 @@
+package br.com.dende.softhouse.process;
+
+import br.com.dende.softhouse.process.fixtures.deadline.DeadlineApplication;
+import br.com.dende.softhouse.process.fixtures.deadline.DeadlineController;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDeadlineTest {
+
+    private static WebApplication application;
+    private static InProcessClient client;
+
+    @BeforeAll
+    static void setUp() {
+        application = new WebApplication(DeadlineApplication.class);
+        client = application.inProcessClient();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        application.stop();
+    }
+
+    @Test
+    void routeTimeoutAnswers504AndInterruptsHandler() throws InterruptedException {
+        DeadlineController.interrupted = new CountDownLatch(1);
+
+        InProcessResponse response = client.send(InProcessRequest.get("/deadline/route"));
+
+        assertEquals(504, response.status());
+        assertTrue(DeadlineController.interrupted.await(2, TimeUnit.SECONDS), "handler was not interrupted");
+    }
+
+    @Test
+    void withoutTimeoutHandlerRunsToCompletion() {
+        InProcessResponse response = client.send(InProcessRequest.get("/deadline/sleep/200"));
+
+        assertEquals(200, response.status());
+        assertEquals("done", response.bodyAsString());
+    }
+
+    @Test
+    void headerShortensTimeout() {
+        InProcessResponse response = client.send(
+                InProcessRequest.get("/deadline/sleep/2000").header(RequestHandler.TIMEOUT_HEADER, "100")
+        );
+
+        assertEquals(504, response.status());
+    }
+
+    @Test
+    void headerCannotLengthenRouteTimeout() {
+        InProcessResponse response = client.send(
+                InProcessRequest.get("/deadline/bounded/1000").header(RequestHandler.TIMEOUT_HEADER, "10000")
+        );
+
+        assertEquals(504, response.status());
+    }
+
+    @Test
+    void nonPositiveHeaderIsIgnored() {
+        for (String value : new String[]{"0", "-5", "soon"}) {
+            InProcessResponse response = client.send(
+                    InProcessRequest.get("/deadline/sleep/10").header(RequestHandler.TIMEOUT_HEADER, value)
+            );
+
+            assertEquals(200, response.status(), "header " + value);
+        }
+    }
+
+    @Test
+    void oversizedHeaderIsBoundedInsteadOfOverflowing() {
+        InProcessResponse response = client.send(
+                InProcessRequest.get("/deadline/sleep/10").header(RequestHandler.TIMEOUT_HEADER, "10000000000000")
+        );
+
+        assertEquals(200, response.status());
+    }
+
+    @Test
+    void oversizedGlobalTimeoutIsBoundedInsteadOfOverflowing() {
+        application.setRequestTimeout(Duration.ofMillis(Long.MAX_VALUE));
+        try {
+            assertEquals(200, client.send(InProcessRequest.get("/deadline/sleep/10")).status());
+        } finally {
+            application.setRequestTimeout(null);
+        }
+    }
+
+    @Test
+    void globalTimeoutAppliesToRoutesWithoutOne() {
+        application.setRequestTimeout(Duration.ofMillis(100));
+        try {
+            assertEquals(504, client.send(InProcessRequest.get("/deadline/sleep/2000")).status());
+        } finally {
+            application.setRequestTimeout(null);
+        }
+    }
+
+    @Test
+    void completionStageIsCancelledOnTimeout() {
+        InProcessResponse response = client.send(InProcessRequest.get("/deadline/async"));
+
+        assertEquals(504, response.status());
+        assertTrue(DeadlineController.pending.isCancelled());
+    }
+
+    @Test
+    void requestContextIsInjected() {
+        InProcessResponse response = client.send(InProcessRequest.get("/deadline/context"));
+
+        assertEquals(200, response.status());
+        assertEquals("true false", response.bodyAsString());
+    }
+
+    @Test
+    void throwIfCancelledEndsHandlerWith504() throws InterruptedException {
+        DeadlineController.observedCancellation = new CountDownLatch(1);
+
+        InProcessResponse response = client.send(InProcessRequest.get("/deadline/cooperative"));
+
+        assertEquals(504, response.status());
+        assertTrue(DeadlineController.observedCancellation.await(2, TimeUnit.SECONDS));
+    }
+}
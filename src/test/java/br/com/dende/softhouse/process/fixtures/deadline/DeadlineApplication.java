@@ -0,0 +1,4 @@
+package br.com.dende.softhouse.process.fixtures.deadline;
+
+public class DeadlineApplication {
+}
@@ -0,0 +1,63 @@
+package br.com.dende.softhouse.process.fixtures.deadline;
+
+import br.com.dende.softhouse.annotations.Controller;
+import br.com.dende.softhouse.annotations.request.GetMapping;
+import br.com.dende.softhouse.annotations.request.PathVariable;
+import br.com.dende.softhouse.annotations.request.RequestMapping;
+import br.com.dende.softhouse.process.RequestContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+@Controller
+@RequestMapping(path = "/deadline")
+public class DeadlineController {
+
+    public static volatile CompletableFuture<String> pending;
+    public static volatile CountDownLatch interrupted = new CountDownLatch(1);
+    public static volatile CountDownLatch observedCancellation = new CountDownLatch(1);
+
+    @GetMapping(path = "/route", timeoutMillis = 100)
+    public String routeTimeout() throws InterruptedException {
+        try {
+            Thread.sleep(5_000);
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw e;
+        }
+        return "late";
+    }
+
+    @GetMapping(path = "/sleep/{millis}")
+    public String sleep(@PathVariable(parameter = "millis") Long millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return "done";
+    }
+
+    @GetMapping(path = "/bounded/{millis}", timeoutMillis = 200)
+    public String bounded(@PathVariable(parameter = "millis") Long millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return "done";
+    }
+
+    @GetMapping(path = "/async", timeoutMillis = 100)
+    public CompletableFuture<String> async() {
+        pending = new CompletableFuture<>();
+        return pending;
+    }
+
+    @GetMapping(path = "/context", timeoutMillis = 5_000)
+    public String context(RequestContext context) {
+        return context.deadline().isPresent() + " " + context.isCancelled();
+    }
+
+    @GetMapping(path = "/cooperative", timeoutMillis = 500)
+    public String cooperative(RequestContext context) {
+        while (!context.isCancelled()) {
+            Thread.yield();
+        }
+        observedCancellation.countDown();
+        context.throwIfCancelled();
+        return "unreachable";
+    }
+}
@@ -0,0 +1,54 @@
+package br.com.dende.softhouse.process.fixtures.inprocess;
+
+import br.com.dende.softhouse.annotations.Controller;
+import br.com.dende.softhouse.annotations.request.GetMapping;
+import br.com.dende.softhouse.annotations.request.PathVariable;
+import br.com.dende.softhouse.annotations.request.PostMapping;
+import br.com.dende.softhouse.annotations.request.RequestBody;
+import br.com.dende.softhouse.annotations.request.RequestMapping;
+import br.com.dende.softhouse.process.route.ResponseEntity;
+
+@Controller
+@RequestMapping(path = "/items")
+public class ItemController {
+
+    public static volatile Object lastBody;
+
+    @GetMapping(path = "/{id}")
+    public ResponseEntity<Item> find(@PathVariable(parameter = "id") Long id) {
+        return ResponseEntity.ok(new Item(id, "item-" + id));
+    }
+
+    @GetMapping(path = "/{id}/name")
+    public String name(@PathVariable(parameter = "id") Long id) {
+        return "item-" + id;
+    }
+
+    @PostMapping(path = "/create")
+    public ResponseEntity<Item> create(@RequestBody Item item) {
+        lastBody = item;
+        return ResponseEntity.status(201, item).header("Location", "/items/" + item.id());
+    }
+
+    @PostMapping(path = "/rename")
+    public ResponseEntity<ItemName> rename(@RequestBody ItemName name) {
+        lastBody = name;
+        return ResponseEntity.ok(name);
+    }
+
+    @GetMapping(path = "/empty")
+    public ResponseEntity<Item> empty() {
+        return ResponseEntity.status(204, null);
+    }
+
+    @GetMapping(path = "/broken")
+    public String broken() {
+        throw new IllegalStateException("broken on purpose");
+    }
+
+    @GetMapping(path = "/slow", timeoutMillis = 100)
+    public String slow() throws InterruptedException {
+        Thread.sleep(5_000);
+        return "late";
+    }
+}
@@ -0,0 +1,4 @@
+package br.com.dende.softhouse.process.fixtures.inprocess;
+
+public record ItemName(String name) {
+}
@@ -0,0 +1,235 @@
+package br.com.dende.softhouse.process.http2;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Map.entry;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Examples of RFC 7541, Appendix C.
+ */
+class HpackTest {
+
+    @Test
+    void integerFitsInPrefix() throws Http2Exception {
+        assertIntRoundTrip(10, 5, "0a");
+    }
+
+    @Test
+    void integerExceedsPrefix() throws Http2Exception {
+        assertIntRoundTrip(1337, 5, "1f9a0a");
+    }
+
+    @Test
+    void integerStartsAtOctetBoundary() throws Http2Exception {
+        assertIntRoundTrip(42, 8, "2a");
+    }
+
+    @Test
+    void integerEqualToPrefixMaximumTakesContinuationOctet() throws Http2Exception {
+        assertIntRoundTrip(31, 5, "1f00");
+    }
+
+    @Test
+    void integerOverflowIsRejected() {
+        ByteBuffer in = ByteBuffer.wrap(hex("1fffffffff0f"));
+
+        Http2Exception e = assertThrows(Http2Exception.class, () -> HpackDecoder.readInt(in, 5));
+        assertEquals(Http2Exception.COMPRESSION_ERROR, e.errorCode());
+    }
+
+    @Test
+    void literalWithIndexing() throws Http2Exception {
+        HpackDecoder decoder = decoder();
+
+        assertEquals(
+                List.of(entry("custom-key", "custom-header")),
+                decoder.decode(hex("400a637573746f6d2d6b65790d637573746f6d2d686561646572"))
+        );
+        // the field went into the dynamic table
+        assertEquals(List.of(entry("custom-key", "custom-header")), decoder.decode(hex("be")));
+    }
+
+    @Test
+    void literalWithoutIndexing() throws Http2Exception {
+        HpackDecoder decoder = decoder();
+
+        assertEquals(
+                List.of(entry(":path", "/sample/path")),
+                decoder.decode(hex("040c2f73616d706c652f70617468"))
+        );
+        assertThrows(Http2Exception.class, () -> decoder.decode(hex("be")));
+    }
+
+    @Test
+    void literalNeverIndexed() throws Http2Exception {
+        assertEquals(
+                List.of(entry("password", "secret")),
+                decoder().decode(hex("100870617373776f726406736563726574"))
+        );
+    }
+
+    @Test
+    void stringsRoundTripRawAndHuffmanCoded() throws Http2Exception {
+        // the first value is shorter Huffman coded, the second is not
+        List<Map.Entry<String, String>> headers = List.of(
+                entry("content-type", "application/json; charset=utf-8"),
+                entry("x-binary", "þÿ\u0001{}")
+        );
+
+        byte[] block = new HpackEncoder().encode(headers);
+
+        // indexed name in one octet, then the value length with its Huffman flag
+        assertEquals(0x80, block[1] & 0x80, "text value is not Huffman coded");
+        assertEquals(0, block[block.length - 6] & 0x80, "binary value is Huffman coded");
+        assertEquals(headers, decoder().decode(block));
+    }
+
+    @Test
+    void truncatedStringIsRejected() {
+        Http2Exception e = assertThrows(Http2Exception.class, () -> decoder().decode(hex("400a637573746f6d")));
+        assertEquals(Http2Exception.COMPRESSION_ERROR, e.errorCode());
+    }
+
+    @Test
+    void requestsWithoutHuffman() throws Http2Exception {
+        HpackDecoder decoder = decoder();
+
+        assertEquals(firstRequest(), decoder.decode(hex(
+                "828684410f7777772e6578616d706c652e636f6d")));
+        assertEquals(secondRequest(), decoder.decode(hex(
+                "828684be58086e6f2d6361636865")));
+        assertEquals(thirdRequest(), decoder.decode(hex(
+                "828785bf400a637573746f6d2d6b65790c637573746f6d2d76616c7565")));
+    }
+
+    @Test
+    void requestsWithHuffman() throws Http2Exception {
+        HpackDecoder decoder = decoder();
+
+        assertEquals(firstRequest(), decoder.decode(hex(
+                "828684418cf1e3c2e5f23a6ba0ab90f4ff")));
+        assertEquals(secondRequest(), decoder.decode(hex(
+                "828684be5886a8eb10649cbf")));
+        assertEquals(thirdRequest(), decoder.decode(hex(
+                "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf")));
+    }
+
+    @Test
+    void encoderProducesHuffmanRequests() {
+        HpackEncoder encoder = new HpackEncoder();
+
+        assertArrayEquals(hex("828684418cf1e3c2e5f23a6ba0ab90f4ff"), encoder.encode(firstRequest()));
+        assertArrayEquals(hex("828684be5886a8eb10649cbf"), encoder.encode(secondRequest()));
+        assertArrayEquals(
+                hex("828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"),
+                encoder.encode(thirdRequest())
+        );
+    }
+
+    @Test
+    void responsesWithHuffmanEvictFromSmallTable() throws Http2Exception {
+        HpackDecoder decoder = new HpackDecoder(256, 16384);
+
+        assertEquals(List.of(
+                entry(":status", "302"),
+                entry("cache-control", "private"),
+                entry("date", "Mon, 21 Oct 2013 20:13:21 GMT"),
+                entry("location", "https://www.example.com")
+        ), decoder.decode(hex(
+                "488264025885aec3771a4b6196d07abe941054d444a8200595040b8166e082a62d1bff"
+                        + "6e919d29ad171863c78f0b97c8e9ae82ae43d3")));
+
+        assertEquals(List.of(
+                entry(":status", "307"),
+                entry("cache-control", "private"),
+                entry("date", "Mon, 21 Oct 2013 20:13:21 GMT"),
+                entry("location", "https://www.example.com")
+        ), decoder.decode(hex("4883640effc1c0bf")));
+
+        assertEquals(List.of(
+                entry(":status", "200"),
+                entry("cache-control", "private"),
+                entry("date", "Mon, 21 Oct 2013 20:13:22 GMT"),
+                entry("location", "https://www.example.com"),
+                entry("content-encoding", "gzip"),
+                entry("set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1")
+        ), decoder.decode(hex(
+                "88c16196d07abe941054d444a8200595040b8166e084a62d1bffc05a839bd9ab77ad94e7821dd7f2e6c7b3"
+                        + "35dfdfcd5b3960d5af27087f3672c1ab270fb5291f9587316065c003ed4ee5b1063d5007")));
+    }
+
+    @Test
+    void tableSizeUpdateAboveLimitIsRejected() {
+        // 0x3fe11f announces 4096, the decoder only allows 256
+        HpackDecoder decoder = new HpackDecoder(256, 16384);
+
+        Http2Exception e = assertThrows(Http2Exception.class, () -> decoder.decode(hex("3fe11f")));
+        assertEquals(Http2Exception.COMPRESSION_ERROR, e.errorCode());
+    }
+
+    @Test
+    void headerListAboveLimitIsRejected() {
+        HpackDecoder decoder = new HpackDecoder(4096, 64);
+
+        // two fields of 32 + 17 bytes each
+        Http2Exception e = assertThrows(Http2Exception.class, () -> decoder.decode(hex(
+                "040c2f73616d706c652f70617468040c2f73616d706c652f70617468")));
+        assertEquals(Http2Exception.ENHANCE_YOUR_CALM, e.errorCode());
+    }
+
+    private static void assertIntRoundTrip(int value, int prefixBits, String encoded) throws Http2Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HpackEncoder.writeInt(out, 0, prefixBits, value);
+        assertArrayEquals(hex(encoded), out.toByteArray());
+
+        ByteBuffer in = ByteBuffer.wrap(hex(encoded));
+        assertEquals(value, HpackDecoder.readInt(in, prefixBits));
+        assertEquals(0, in.remaining());
+    }
+
+    private static HpackDecoder decoder() {
+        return new HpackDecoder(HpackTable.DEFAULT_SIZE, 16384);
+    }
+
+    private static List<Map.Entry<String, String>> firstRequest() {
+        return List.of(
+                entry(":method", "GET"),
+                entry(":scheme", "http"),
+                entry(":path", "/"),
+                entry(":authority", "www.example.com")
+        );
+    }
+
+    private static List<Map.Entry<String, String>> secondRequest() {
+        return List.of(
+                entry(":method", "GET"),
+                entry(":scheme", "http"),
+                entry(":path", "/"),
+                entry(":authority", "www.example.com"),
+                entry("cache-control", "no-cache")
+        );
+    }
+
+    private static List<Map.Entry<String, String>> thirdRequest() {
+        return List.of(
+                entry(":method", "GET"),
+                entry(":scheme", "https"),
+                entry(":path", "/index.html"),
+                entry(":authority", "www.example.com"),
+                entry("custom-key", "custom-value")
+        );
+    }
+
+    static byte[] hex(String hex) {
+        return HexFormat.of().parseHex(hex);
+    }
+}
@@ -0,0 +1,581 @@
+package br.com.dende.softhouse.process.http2;
+
+import br.com.dende.softhouse.process.RequestContext;
+import br.com.dende.softhouse.process.RequestHandler;
+import br.com.dende.softhouse.process.route.HTTPMethod;
+import br.com.dende.softhouse.process.route.Route;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Http2ServerTest {
+
+    private static final AtomicInteger running = new AtomicInteger();
+    private static final AtomicInteger maxRunning = new AtomicInteger();
+    private static volatile CountDownLatch contextCancelled = new CountDownLatch(1);
+
+    private static RequestHandler requestHandler;
+
+    private static ExecutorService executor;
+    private static Http2Server server;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        requestHandler = new RequestHandler(Map.of(
+                "/context", new Route(HTTPMethod.GET, "/context", new ContextController(),
+                        ContextController.class.getMethod("awaitCancellation", RequestContext.class),
+                        List.of(), null, Pattern.compile("^/context$"))
+        ));
+        executor = Executors.newFixedThreadPool(32);
+        server = Http2Server.create(new InetSocketAddress("localhost", 0), Http2ServerTest::handle, executor);
+        server.start();
+        client = newClient();
+        // upgrade once, so every test below runs as streams of the same connection
+        client.send(HttpRequest.newBuilder(uri("/hello")).build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop();
+        executor.shutdownNow();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        switch (path) {
+            case "/hello" -> respond(exchange, 200, "hello over " + exchange.getProtocol());
+            case "/echo" -> {
+                byte[] body;
+                try (InputStream in = exchange.getRequestBody()) {
+                    body = in.readAllBytes();
+                }
+                respond(exchange, 200, body);
+            }
+            case "/big" -> respond(exchange, 200, pattern(256 * 1024));
+            case "/unsized" -> {
+                // no declared length, written a byte at a time and as an array
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (byte b : "unsized ".getBytes(StandardCharsets.UTF_8)) {
+                        out.write(b);
+                    }
+                    out.write(pattern(40 * 1024));
+                }
+            }
+            case "/slow" -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+                respond(exchange, 200, exchange.getRequestURI().getQuery());
+            }
+            case "/context" -> requestHandler.handle(exchange);
+            case "/injected" -> {
+                exchange.getResponseHeaders().add("X-Greeting", "hi\r\nSet-Cookie: session=stolen");
+                respond(exchange, 200, "injected");
+            }
+            default -> exchange.sendResponseHeaders(404, -1);
+        }
+    }
+
+    public static class ContextController {
+
+        public String awaitCancellation(RequestContext context) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!context.isCancelled() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            if (context.isCancelled()) {
+                contextCancelled.countDown();
+            }
+            return "done";
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static HttpClient newClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    private static byte[] pattern(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        return bytes;
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    void upgradesToHttp2() throws Exception {
+        HttpResponse<String> response = newClient().send(
+                HttpRequest.newBuilder(uri("/hello")).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        assertEquals(200, response.statusCode());
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+        assertEquals("hello over HTTP/2.0", response.body());
+    }
+
+    @Test
+    void postBodyLargerThanWindowIsEchoed() throws Exception {
+        byte[] body = pattern(300 * 1024);
+
+        HttpResponse<byte[]> response = client.send(
+                HttpRequest.newBuilder(uri("/echo")).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(),
+                HttpResponse.BodyHandlers.ofByteArray()
+        );
+
+        assertEquals(200, response.statusCode());
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+        assertArrayEquals(body, response.body());
+    }
+
+    @Test
+    void unreadBodyDoesNotHoldTheResponse() throws Exception {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri("/hello"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(pattern(300 * 1024)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        assertEquals(200, response.statusCode());
+        assertEquals("hello over HTTP/2.0", response.body());
+    }
+
+    @Test
+    void upgradeWithLargeBodyIsServedOverHttp1() throws Exception {
+        byte[] body = pattern(100 * 1024);
+
+        HttpResponse<byte[]> response = newClient().send(
+                HttpRequest.newBuilder(uri("/echo")).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(),
+                HttpResponse.BodyHandlers.ofByteArray()
+        );
+
+        assertEquals(200, response.statusCode());
+        assertEquals(HttpClient.Version.HTTP_1_1, response.version());
+        assertArrayEquals(body, response.body());
+    }
+
+    @Test
+    void responseLargerThanWindowIsDelivered() throws Exception {
+        HttpResponse<byte[]> response = client.send(
+                HttpRequest.newBuilder(uri("/big")).build(),
+                HttpResponse.BodyHandlers.ofByteArray()
+        );
+
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(pattern(256 * 1024), response.body());
+    }
+
+    @Test
+    void responseWithoutDeclaredLengthIsDelivered() throws Exception {
+        HttpResponse<byte[]> response = client.send(
+                HttpRequest.newBuilder(uri("/unsized")).build(),
+                HttpResponse.BodyHandlers.ofByteArray()
+        );
+
+        byte[] prefix = "unsized ".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = new byte[prefix.length + 40 * 1024];
+        System.arraycopy(prefix, 0, expected, 0, prefix.length);
+        System.arraycopy(pattern(40 * 1024), 0, expected, prefix.length, 40 * 1024);
+
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(expected, response.body());
+    }
+
+    @Test
+    void unknownPathAnswers404() throws Exception {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri("/missing")).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        assertEquals(404, response.statusCode());
+        assertEquals("", response.body());
+    }
+
+    @Test
+    void streamsOfOneConnectionRunConcurrently() throws Exception {
+        maxRunning.set(0);
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            responses.add(client.sendAsync(
+                    HttpRequest.newBuilder(uri("/slow?" + i)).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            ));
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<String> response = responses.get(i).get();
+            assertEquals(200, response.statusCode());
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals(Integer.toString(i), response.body());
+        }
+        assertTrue(maxRunning.get() > 1, "streams were handled one at a time");
+    }
+
+    @Test
+    void continuationFloodEndsConnectionWithEnhanceYourCalm() throws IOException {
+        try (Socket socket = priorKnowledge()) {
+            OutputStream out = socket.getOutputStream();
+            // HEADERS without END_HEADERS, then empty CONTINUATION frames, one more than allowed
+            writeFrame(out, 0x1, 0, 1, new byte[]{(byte) 0x82});
+            for (int i = 0; i < 9; i++) {
+                writeFrame(out, 0x9, 0, 1, new byte[0]);
+            }
+
+            assertEquals(0xb, readGoAwayError(socket));
+        }
+    }
+
+    @Test
+    void reusedStreamIdEndsConnectionWithProtocolError() throws IOException {
+        try (Socket socket = priorKnowledge()) {
+            OutputStream out = socket.getOutputStream();
+            writeFrame(out, 0x1, 0x5, 3, headerBlock("/hello"));
+            writeFrame(out, 0x1, 0x5, 1, headerBlock("/hello"));
+
+            assertEquals(0x1, readGoAwayError(socket));
+        }
+    }
+
+    @Test
+    void oversizedHeaderBlockEndsConnectionWithEnhanceYourCalm() throws IOException {
+        try (Socket socket = priorKnowledge()) {
+            OutputStream out = socket.getOutputStream();
+            writeFrame(out, 0x1, 0, 1, new byte[16000]);
+            writeFrame(out, 0x9, 0, 1, new byte[16000]);
+
+            assertEquals(0xb, readGoAwayError(socket));
+        }
+    }
+
+    @Test
+    void http1StatusLineCarriesTheReasonPhrase() throws IOException {
+        String response = http1("GET /hello HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"), response);
+    }
+
+    @Test
+    void malformedContentLengthAnswers400() throws IOException {
+        String response = http1("POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5x\r\n\r\nhello");
+
+        assertTrue(response.startsWith("HTTP/1.1 400 Bad Request\r\n"), response);
+    }
+
+    @Test
+    void conflictingContentLengthsAnswer400() throws IOException {
+        String response = http1("POST /echo HTTP/1.1\r\nHost: localhost\r\n"
+                + "Content-Length: 5\r\nContent-Length: 6\r\n\r\nhello!");
+
+        assertTrue(response.startsWith("HTTP/1.1 400 Bad Request\r\n"), response);
+    }
+
+    @Test
+    void headerValueWithLineBreakIsNotWritten() throws Exception {
+        String response = http1("GET /injected HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        assertTrue(response.startsWith("HTTP/1.1 500 Internal Server Error\r\n"), response);
+        assertFalse(response.contains("Set-Cookie"), response);
+
+        HttpResponse<String> h2 = client.send(
+                HttpRequest.newBuilder(uri("/injected")).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+        assertEquals(500, h2.statusCode());
+        assertTrue(h2.headers().firstValue("set-cookie").isEmpty());
+    }
+
+    /**
+     * Sends a plain HTTP/1.1 request and returns the response head.
+     */
+    private static String http1(String request) throws IOException {
+        try (Socket socket = new Socket("localhost", server.getAddress().getPort())) {
+            socket.setSoTimeout(5_000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            socket.getOutputStream().flush();
+
+            InputStream in = socket.getInputStream();
+            StringBuilder head = new StringBuilder();
+            int b;
+            while (!head.toString().endsWith("\r\n\r\n") && (b = in.read()) != -1) {
+                head.append((char) b);
+            }
+            return head.toString();
+        }
+    }
+
+    @Test
+    void streamsWaitingForABodyDoNotStarveOtherClients() throws Exception {
+        ExecutorService small = Executors.newFixedThreadPool(8);
+        Http2Server target = Http2Server.create(new InetSocketAddress("localhost", 0), Http2ServerTest::handle, small);
+        target.start();
+
+        try (Socket socket = priorKnowledge(target)) {
+            OutputStream out = socket.getOutputStream();
+            // POSTs that announce a body and never send it
+            byte[] echo = headerBlock(0x83, "/echo");
+            for (int stream = 1; stream <= 2 * 10; stream += 2) {
+                writeFrame(out, 0x1, 0x4, stream, echo);
+            }
+
+            HttpResponse<String> response = newClient().send(
+                    HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + target.getAddress().getPort() + "/hello")
+                    ).timeout(Duration.ofSeconds(5)).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            );
+
+            assertEquals(200, response.statusCode());
+        } finally {
+            target.stop();
+            small.shutdownNow();
+        }
+    }
+
+    @Test
+    void stalledBodyTimesOutAndIdleConnectionIsClosed() throws IOException {
+        Http2Server target = Http2Server.create(new InetSocketAddress("localhost", 0), Http2ServerTest::handle, executor);
+        target.setIdleTimeout(Duration.ofMillis(300));
+        target.start();
+
+        try (Socket socket = priorKnowledge(target)) {
+            writeFrame(socket.getOutputStream(), 0x1, 0x4, 1, headerBlock(0x83, "/echo"));
+
+            // the handler gives up on the body, then the silent connection is let go
+            assertEquals(0x0, readGoAwayError(socket));
+        } finally {
+            target.stop();
+        }
+    }
+
+    @Test
+    void stopSendsGoAwayOnOpenConnections() throws IOException {
+        Http2Server target = Http2Server.create(new InetSocketAddress("localhost", 0), Http2ServerTest::handle, executor);
+        target.start();
+
+        try (Socket socket = priorKnowledge(target)) {
+            writeFrame(socket.getOutputStream(), 0x6, 0, 0, new byte[8]);
+            readPingAck(socket);
+
+            target.stop();
+
+            assertEquals(0x0, readGoAwayError(socket));
+        }
+    }
+
+    @Test
+    void stopEndsConnectionsOfExistingClients() throws Exception {
+        Http2Server target = Http2Server.create(new InetSocketAddress("localhost", 0), Http2ServerTest::handle, executor);
+        target.start();
+        HttpClient existing = newClient();
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + target.getAddress().getPort() + "/hello")
+        ).timeout(Duration.ofSeconds(5)).build();
+
+        assertEquals(200, existing.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        target.stop();
+
+        assertThrows(IOException.class, () -> existing.send(request, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    private static Socket priorKnowledge() throws IOException {
+        return priorKnowledge(server);
+    }
+
+    private static Socket priorKnowledge(Http2Server target) throws IOException {
+        Socket socket = new Socket("localhost", target.getAddress().getPort());
+        socket.setSoTimeout(5_000);
+        OutputStream out = socket.getOutputStream();
+        out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        writeFrame(out, 0x4, 0, 0, new byte[0]);
+        return socket;
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+        out.write(new byte[]{
+                (byte) (payload.length >>> 16), (byte) (payload.length >>> 8), (byte) payload.length,
+                (byte) type, (byte) flags,
+                (byte) (streamId >>> 24), (byte) (streamId >>> 16), (byte) (streamId >>> 8), (byte) streamId
+        });
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Skips frames until the acknowledgement of a PING, so the connection is known to be up.
+     */
+    private static void readPingAck(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        while (true) {
+            int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            in.readInt();
+            in.readNBytes(length);
+            if (type == 0x6 && (flags & 0x1) != 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips frames until GOAWAY and returns its error code.
+     */
+    private static int readGoAwayError(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        while (true) {
+            int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            in.readUnsignedByte();
+            in.readInt();
+            byte[] payload = in.readNBytes(length);
+            if (type == 0x7) {
+                return ((payload[4] & 0xFF) << 24) | ((payload[5] & 0xFF) << 16)
+                        | ((payload[6] & 0xFF) << 8) | (payload[7] & 0xFF);
+            }
+        }
+    }
+
+    @Test
+    void resetStreamsCountUntilTheirHandlersReturn() throws IOException {
+        try (Socket socket = priorKnowledge()) {
+            OutputStream out = socket.getOutputStream();
+            // each handler sleeps, so resetting right away must not free its slot
+            byte[] slow = headerBlock("/slow");
+            for (int stream = 1; stream <= 2 * 150; stream += 2) {
+                writeFrame(out, 0x1, 0x5, stream, slow);
+                writeFrame(out, 0x3, 0, stream, new byte[]{0, 0, 0, 0x8});
+            }
+            writeFrame(out, 0x6, 0, 0, new byte[8]);
+
+            assertTrue(countRefusedUntilPingAck(socket) > 0, "no stream was refused");
+        }
+    }
+
+    @Test
+    void resetCancelsTheRequestContext() throws IOException, InterruptedException {
+        contextCancelled = new CountDownLatch(1);
+
+        try (Socket socket = priorKnowledge()) {
+            OutputStream out = socket.getOutputStream();
+            writeFrame(out, 0x1, 0x5, 1, headerBlock("/context"));
+            Thread.sleep(100);
+            writeFrame(out, 0x3, 0, 1, new byte[]{0, 0, 0, 0x8});
+
+            assertTrue(contextCancelled.await(2, TimeUnit.SECONDS), "request context was not cancelled");
+        }
+    }
+
+    @Test
+    void disconnectCancelsTheRequestContext() throws IOException, InterruptedException {
+        contextCancelled = new CountDownLatch(1);
+
+        try (Socket socket = priorKnowledge()) {
+            writeFrame(socket.getOutputStream(), 0x1, 0x5, 1, headerBlock("/context"));
+            Thread.sleep(100);
+        }
+
+        assertTrue(contextCancelled.await(2, TimeUnit.SECONDS), "request context was not cancelled");
+    }
+
+    /**
+     * GET request for the path: indexed :method GET and :scheme http, literal :path.
+     */
+    private static byte[] headerBlock(String path) {
+        return headerBlock(0x82, path);
+    }
+
+    /**
+     * Request with the given static-table :method index (0x82 GET, 0x83 POST).
+     */
+    private static byte[] headerBlock(int method, String path) {
+        byte[] pathBytes = path.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] block = new byte[4 + pathBytes.length];
+        block[0] = (byte) method;
+        block[1] = (byte) 0x86;
+        block[2] = 0x04;
+        block[3] = (byte) pathBytes.length;
+        System.arraycopy(pathBytes, 0, block, 4, pathBytes.length);
+        return block;
+    }
+
+    /**
+     * Counts RST_STREAM(REFUSED_STREAM) frames until the PING sent last is acknowledged.
+     */
+    private static int countRefusedUntilPingAck(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        int refusedStreams = 0;
+        while (true) {
+            int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            in.readInt();
+            byte[] payload = in.readNBytes(length);
+            if (type == 0x3 && payload[3] == 0x7) {
+                refusedStreams++;
+            } else if (type == 0x6 && (flags & 0x1) != 0) {
+                return refusedStreams;
+            }
+        }
+    }
+}
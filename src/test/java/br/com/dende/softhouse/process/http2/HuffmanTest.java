@@ -0,0 +1,84 @@
+package br.com.dende.softhouse.process.http2;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static br.com.dende.softhouse.process.http2.HpackTest.hex;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HuffmanTest {
+
+    @Test
+    void encodesRfcExample() {
+        byte[] value = "www.example.com".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertArrayEquals(hex("f1e3c2e5f23a6ba0ab90f4ff"), encode(value));
+        assertEquals(12, Huffman.encodedLength(value));
+    }
+
+    @Test
+    void everyOctetRoundTrips() throws Http2Exception {
+        byte[] value = new byte[256 * 3];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) (i * 7);
+        }
+
+        byte[] encoded = encode(value);
+
+        assertEquals(Huffman.encodedLength(value), encoded.length);
+        assertArrayEquals(value, Huffman.decode(encoded, 0, encoded.length));
+    }
+
+    @Test
+    void decodesSliceOfLargerArray() throws Http2Exception {
+        byte[] data = hex("00f1e3c2e5f23a6ba0ab90f4ff00");
+
+        assertArrayEquals(
+                "www.example.com".getBytes(StandardCharsets.ISO_8859_1),
+                Huffman.decode(data, 1, data.length - 2)
+        );
+    }
+
+    @Test
+    void emptyStringRoundTrips() throws Http2Exception {
+        assertEquals(0, encode(new byte[0]).length);
+        assertEquals(0, Huffman.decode(new byte[0], 0, 0).length);
+    }
+
+    @Test
+    void paddingLongerThanSevenBitsIsRejected() {
+        // "a" is 00011, then a full octet of EOS prefix
+        byte[] data = hex("1fff");
+
+        Http2Exception e = assertThrows(Http2Exception.class, () -> Huffman.decode(data, 0, data.length));
+        assertEquals(Http2Exception.COMPRESSION_ERROR, e.errorCode());
+    }
+
+    @Test
+    void paddingThatIsNotEosPrefixIsRejected() {
+        // "a" is 00011, padded with zeros instead of ones
+        byte[] data = hex("18");
+
+        Http2Exception e = assertThrows(Http2Exception.class, () -> Huffman.decode(data, 0, data.length));
+        assertEquals(Http2Exception.COMPRESSION_ERROR, e.errorCode());
+    }
+
+    @Test
+    void eosSymbolIsRejected() {
+        // EOS is thirty ones, padded with two more
+        byte[] data = hex("ffffffff");
+
+        Http2Exception e = assertThrows(Http2Exception.class, () -> Huffman.decode(data, 0, data.length));
+        assertEquals(Http2Exception.COMPRESSION_ERROR, e.errorCode());
+    }
+
+    private static byte[] encode(byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode(value, out);
+        return out.toByteArray();
+    }
+}
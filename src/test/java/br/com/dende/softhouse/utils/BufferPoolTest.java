@@ -0,0 +1,75 @@
+package br.com.dende.softhouse.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BufferPoolTest {
+
+    @Test
+    void releasedBufferIsReusedEmpty() {
+        BufferPool pool = new BufferPool(1, 1024, 4096);
+
+        PooledBuffer buffer = pool.acquire();
+        buffer.writeUtf8("hello");
+        buffer.release();
+
+        PooledBuffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.size());
+        assertEquals(1, pool.stats().hits());
+    }
+
+    @Test
+    void bufferGrownPastRetentionLimitIsDropped() {
+        BufferPool pool = new BufferPool(1, 1024, 4096);
+
+        PooledBuffer buffer = pool.acquire();
+        buffer.write(new byte[8192], 0, 8192);
+        buffer.release();
+
+        BufferPool.Stats stats = pool.stats();
+        assertEquals(0, stats.pooled());
+        assertEquals(0, stats.pooledBytes());
+        assertEquals(1, stats.discarded());
+        assertNotSame(buffer, pool.acquire());
+    }
+
+    @Test
+    void retentionLimitCanBeRaised() {
+        BufferPool pool = new BufferPool(1, 1024, 4096);
+        pool.setMaxRetainedSize(16 * 1024);
+
+        PooledBuffer buffer = pool.acquire();
+        buffer.write(new byte[8192], 0, 8192);
+        buffer.release();
+
+        assertEquals(1, pool.stats().pooled());
+        assertSame(buffer, pool.acquire());
+    }
+
+    @Test
+    void retentionLimitBelowBufferSizeIsRejected() {
+        BufferPool pool = new BufferPool(1, 1024, 4096);
+
+        assertThrows(IllegalArgumentException.class, () -> pool.setMaxRetainedSize(512));
+    }
+
+    @Test
+    void utf8MatchesStringEncoding() {
+        BufferPool pool = new BufferPool(1, 4, 4096);
+        String text = "ação 🚀 ok";
+
+        PooledBuffer buffer = pool.acquire();
+        buffer.writeUtf8(text);
+
+        byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, buffer.size());
+        assertEquals(text, new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8));
+    }
+}